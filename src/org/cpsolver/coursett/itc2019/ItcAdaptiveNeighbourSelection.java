@@ -0,0 +1,243 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.Logger;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.ifs.algorithms.HillClimber.HillClimberSelection;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.heuristics.NeighbourSelection;
+import org.cpsolver.ifs.model.LazyNeighbour;
+import org.cpsolver.ifs.model.Neighbour;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+
+/**
+ * Adaptive selection among several neighbourhoods (ItcAdaptive.Neighbours, a semicolon separated list of class names,
+ * each optionally followed by @weight that is used as a prior). For each neighbourhood, the number of calls, returned and accepted
+ * neighbours, the improvement of the accepted neighbours and the time spent in the selection (and in the evaluation of the
+ * returned neighbour) are tracked, exponentially decayed by ItcAdaptive.Decay on each call. A neighbourhood is then selected with the probability proportional to
+ * its prior weight times its yield, the (improvement + acceptance bonus) per millisecond, with ItcAdaptive.Exploration probability
+ * of selecting by the prior weights only (multi-armed bandit). A neighbourhood that was not called (recently) is given
+ * the mean yield of the other neighbourhoods, so that its weight is on the same scale.
+ * Acceptance is detected by the neighbour being assigned; lazy neighbours are passed through, without being tracked.
+ * The statistics are logged every ItcAdaptive.LogInterval seconds (when positive).
+ *
+ */
+public class ItcAdaptiveNeighbourSelection implements NeighbourSelection<Lecture, Placement>, HillClimberSelection {
+    private static Logger sLog = org.apache.logging.log4j.LogManager.getLogger(ItcAdaptiveNeighbourSelection.class);
+    private static DecimalFormat sDF = new DecimalFormat("0.000");
+    private List<Operator> iOperators = new ArrayList<Operator>();
+    private double iDecay = 0.999;
+    private double iExploration = 0.1;
+    private double iAcceptanceBonus = 0.01;
+    private long iLogInterval = 60000;
+    private long iLastLog = 0;
+
+    public ItcAdaptiveNeighbourSelection(DataProperties config) throws Exception {
+        iDecay = config.getPropertyDouble("ItcAdaptive.Decay", iDecay);
+        iExploration = config.getPropertyDouble("ItcAdaptive.Exploration", iExploration);
+        iAcceptanceBonus = config.getPropertyDouble("ItcAdaptive.AcceptanceBonus", iAcceptanceBonus);
+        iLogInterval = Math.round(1000.0 * config.getPropertyDouble("ItcAdaptive.LogInterval", 60.0));
+        String neighbours = config.getProperty("ItcAdaptive.Neighbours",
+                ItcTimeChange.class.getName() + ";" + ItcRoomChange.class.getName() + ";" +
+                "org.cpsolver.coursett.neighbourhoods.TimeChange@0.2;org.cpsolver.coursett.neighbourhoods.RoomChange@0.2;" +
+                "org.cpsolver.coursett.neighbourhoods.TimeSwap@0.01;org.cpsolver.coursett.neighbourhoods.RoomSwap@0.01");
+        for (String neighbour: neighbours.split("\\;")) {
+            if (neighbour == null || neighbour.isEmpty()) continue;
+            double weight = 1.0;
+            if (neighbour.indexOf('@') >= 0) {
+                weight = Double.parseDouble(neighbour.substring(neighbour.indexOf('@') + 1));
+                neighbour = neighbour.substring(0, neighbour.indexOf('@'));
+            }
+            @SuppressWarnings("unchecked")
+            Class<NeighbourSelection<Lecture, Placement>> clazz = (Class<NeighbourSelection<Lecture, Placement>>)Class.forName(neighbour);
+            iOperators.add(new Operator(clazz.getConstructor(DataProperties.class).newInstance(config), weight));
+        }
+    }
+
+    @Override
+    public void init(Solver<Lecture, Placement> solver) {
+        for (Operator operator: iOperators)
+            operator.getSelection().init(solver);
+        iLastLog = System.currentTimeMillis();
+    }
+
+    @Override
+    public void setHcMode(boolean hcMode) {
+        for (Operator operator: iOperators)
+            if (operator.getSelection() instanceof HillClimberSelection)
+                ((HillClimberSelection)operator.getSelection()).setHcMode(hcMode);
+    }
+
+    /** Mean yield of the operators that have been called (recently), 1.0 if there are none */
+    protected double getMeanYield() {
+        double total = 0.0;
+        int count = 0;
+        for (Operator operator: iOperators)
+            if (operator.isActive()) {
+                total += operator.getYield(); count ++;
+            }
+        return (count == 0 ? 1.0 : total / count);
+    }
+
+    protected Operator selectOperator() {
+        boolean explore = (ToolBox.random() < iExploration);
+        double mean = (explore ? 0.0 : getMeanYield());
+        double total = 0.0;
+        for (Operator operator: iOperators)
+            total += (explore ? operator.getPrior() : operator.getWeight(mean));
+        if (total <= 0.0) return ToolBox.random(iOperators);
+        double r = ToolBox.random() * total;
+        for (Operator operator: iOperators) {
+            r -= (explore ? operator.getPrior() : operator.getWeight(mean));
+            if (r < 0.0) return operator;
+        }
+        return iOperators.get(iOperators.size() - 1);
+    }
+
+    @Override
+    public Neighbour<Lecture, Placement> selectNeighbour(Solution<Lecture, Placement> solution) {
+        if (iOperators.isEmpty()) return null;
+        for (Operator operator: iOperators)
+            operator.decay(iDecay);
+        Operator operator = selectOperator();
+        long t0 = System.nanoTime();
+        Neighbour<Lecture, Placement> neighbour = operator.getSelection().selectNeighbour(solution);
+        operator.called(System.nanoTime() - t0, neighbour != null);
+        if (iLogInterval > 0 && System.currentTimeMillis() - iLastLog >= iLogInterval) {
+            iLastLog = System.currentTimeMillis();
+            sLog.info("Neighbourhood statistics:\n  " + getStatistics().replace("\n", "\n  "));
+        }
+        if (neighbour == null || neighbour instanceof LazyNeighbour) return neighbour;
+        return new TrackedNeighbour(operator, neighbour);
+    }
+
+    /** Operators (neighbourhoods) of this selection */
+    public List<Operator> getOperators() { return iOperators; }
+
+    /** Current statistics, one line per operator */
+    public String getStatistics() {
+        StringBuffer sb = new StringBuffer();
+        double mean = getMeanYield();
+        double total = 0.0;
+        for (Operator operator: iOperators) total += operator.getWeight(mean);
+        for (Operator operator: iOperators) {
+            if (sb.length() > 0) sb.append("\n");
+            sb.append(operator.getName() + ": probability " + sDF.format(total <= 0.0 ? 0.0 : operator.getWeight(mean) / total) +
+                    ", acceptance " + sDF.format(operator.getAcceptanceRate()) +
+                    ", improvement/call " + sDF.format(operator.getImprovementPerCall()) +
+                    ", time/call " + sDF.format(operator.getTimePerCall()) + " ms");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Neighbourhood with its (decayed) statistics
+     */
+    public class Operator {
+        private NeighbourSelection<Lecture, Placement> iSelection;
+        private double iPrior;
+        private double iCalls = 0, iFound = 0, iAccepted = 0, iImprovement = 0, iTime = 0;
+
+        protected Operator(NeighbourSelection<Lecture, Placement> selection, double prior) {
+            iSelection = selection; iPrior = prior;
+        }
+
+        public NeighbourSelection<Lecture, Placement> getSelection() { return iSelection; }
+        public String getName() { return iSelection.getClass().getSimpleName(); }
+        public double getPrior() { return iPrior; }
+
+        protected void decay(double decay) {
+            iCalls *= decay; iFound *= decay; iAccepted *= decay; iImprovement *= decay; iTime *= decay;
+        }
+
+        protected void called(long nanos, boolean found) {
+            iCalls += 1.0; iTime += nanos / 1000000.0;
+            if (found) iFound += 1.0;
+        }
+
+        /** Time spent in the evaluation of a returned neighbour (its first value call) */
+        protected void evaluated(long nanos) {
+            iTime += nanos / 1000000.0;
+        }
+
+        protected void accepted(double value) {
+            iAccepted += 1.0;
+            if (value < 0.0) iImprovement -= value;
+        }
+
+        /** Accepted neighbours per call */
+        public double getAcceptanceRate() { return iCalls <= 0.0 ? 0.0 : iAccepted / iCalls; }
+        /** Improvement per call */
+        public double getImprovementPerCall() { return iCalls <= 0.0 ? 0.0 : iImprovement / iCalls; }
+        /** Time per call in milliseconds */
+        public double getTimePerCall() { return iCalls <= 0.0 ? 0.0 : iTime / iCalls; }
+
+        /** True if the operator has been called (recently), i.e., its decayed number of calls is at least one */
+        public boolean isActive() { return iCalls >= 1.0; }
+        /** (Improvement + acceptance bonus) per millisecond */
+        public double getYield() {
+            return (iImprovement + iAcceptanceBonus * iAccepted + iAcceptanceBonus) / Math.max(iTime, 0.001);
+        }
+
+        /**
+         * Selection weight, the prior times the yield
+         * @param meanYield yield used when the operator is not active (mean yield of the active operators)
+         */
+        public double getWeight(double meanYield) {
+            return iPrior * (isActive() ? getYield() : meanYield);
+        }
+
+        /** Selection weight, see {@link #getWeight(double)} */
+        public double getWeight() {
+            return getWeight(getMeanYield());
+        }
+    }
+
+    /**
+     * Neighbour wrapper that notifies the operator when the neighbour is accepted (assigned)
+     */
+    protected static class TrackedNeighbour implements Neighbour<Lecture, Placement> {
+        private Operator iOperator;
+        private Neighbour<Lecture, Placement> iNeighbour;
+        private Double iValue = null;
+
+        protected TrackedNeighbour(Operator operator, Neighbour<Lecture, Placement> neighbour) {
+            iOperator = operator; iNeighbour = neighbour;
+        }
+
+        @Override
+        public void assign(Assignment<Lecture, Placement> assignment, long iteration) {
+            iOperator.accepted(value(assignment));
+            iNeighbour.assign(assignment, iteration);
+        }
+
+        @Override
+        public double value(Assignment<Lecture, Placement> assignment) {
+            if (iValue == null) {
+                // neighbourhoods that return unevaluated neighbours are charged for the evaluation as well
+                long t0 = System.nanoTime();
+                iValue = iNeighbour.value(assignment);
+                iOperator.evaluated(System.nanoTime() - t0);
+            }
+            return iValue;
+        }
+
+        @Override
+        public Map<Lecture, Placement> assignments() {
+            return iNeighbour.assignments();
+        }
+
+        @Override
+        public String toString() {
+            return iNeighbour.toString();
+        }
+    }
+}
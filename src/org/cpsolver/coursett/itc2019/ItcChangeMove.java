@@ -0,0 +1,114 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.List;
+
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.ifs.algorithms.HillClimber.HillClimberSelection;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.heuristics.NeighbourSelection;
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.model.Neighbour;
+import org.cpsolver.ifs.model.SimpleNeighbour;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+
+/**
+ * Base of the ITC 2019 change neighbourhoods. A move is represented by a class and a time and room index
+ * into its time and room lists. The index combination is checked against the class domain before any placement
+ * is looked up: for an {@link ItcLecture}, the existing placement of its domain is reused (a placement is only created
+ * when the lazy {@link ItcPlacementDomain} is used), and the neighbour is only created for the returned move.
+ * Only moves that are not in a hard conflict are considered, so no conflict sets or assignment maps are needed;
+ * moves that need a conflict to be resolved are left to the coursett TimeChange and RoomChange neighbourhoods
+ * (that are kept in the ItcAdaptive.Neighbours). For the same reason, there are no ITC versions of the TimeSwap
+ * and RoomSwap neighbourhoods: a swap is a move into a hard conflict with the swapped class, which has to be found
+ * (a conflict set) and evaluated together with the move (a neighbour with both assignments), so it cannot be
+ * checked on the index primitives alone and the coursett TimeSwap and RoomSwap are used instead.
+ * When the {@link ItcPenalizedLectures} extension is registered, the class is taken from it with
+ * the ItcPenalized.Probability probability.
+ *
+ */
+public abstract class ItcChangeMove implements NeighbourSelection<Lecture, Placement>, HillClimberSelection {
+    protected int iMaxAttempts = 100;
+    protected boolean iHC = false;
+    protected double iPenalizedProb = 0.5;
+    protected ItcPenalizedLectures iPenalized = null;
+
+    public ItcChangeMove(DataProperties config) {
+        iMaxAttempts = config.getPropertyInt("ItcChange.MaxAttempts", iMaxAttempts);
+        iPenalizedProb = config.getPropertyDouble("ItcPenalized.Probability", iPenalizedProb);
+    }
+
+    @Override
+    public void init(Solver<Lecture, Placement> solver) {
+        iPenalized = ItcPenalizedLectures.getInstance(solver);
+    }
+
+    @Override
+    public void setHcMode(boolean hcMode) {
+        iHC = hcMode;
+    }
+
+    @Override
+    public Neighbour<Lecture, Placement> selectNeighbour(Solution<Lecture, Placement> solution) {
+        Model<Lecture, Placement> model = solution.getModel();
+        Assignment<Lecture, Placement> assignment = solution.getAssignment();
+        List<Lecture> variables = model.variables();
+        int attempts = 0;
+        int varIdx = ToolBox.random(variables.size());
+        if (iPenalized != null && ToolBox.random() < iPenalizedProb) {
+            Lecture penalized = iPenalized.select(assignment);
+            if (penalized != null && iPenalized.getIndex(penalized) >= 0)
+                varIdx = iPenalized.getIndex(penalized);
+        }
+        for (int i = 0; i < variables.size(); i++) {
+            Lecture lecture = variables.get((i + varIdx) % variables.size());
+            Placement old = assignment.getValue(lecture);
+            if (old == null || old.isMultiRoom()) continue;
+            int timeIndex = lecture.timeLocations().indexOf(old.getTimeLocation());
+            int roomIndex = (lecture.getNrRooms() == 0 ? -1 : lecture.roomLocations().indexOf(old.getRoomLocation()));
+            if (timeIndex < 0 || (lecture.getNrRooms() > 0 && roomIndex < 0)) continue;
+            int nrCandidates = getNrCandidates(lecture);
+            if (nrCandidates <= 1) continue;
+            ItcLecture itc = (lecture instanceof ItcLecture ? (ItcLecture)lecture : null);
+            double oldValue = (iHC ? old.toDouble(assignment) : 0.0);
+            int candIdx = ToolBox.random(nrCandidates);
+            for (int j = 0; j < nrCandidates; j++) {
+                int cand = (j + candIdx) % nrCandidates;
+                int t = getTimeIndex(timeIndex, cand);
+                int r = getRoomIndex(roomIndex, cand);
+                if (t == timeIndex && r == roomIndex) continue;
+                if (itc != null && !itc.hasPlacement(assignment, t, r)) continue;
+                if (attempts++ >= iMaxAttempts) return null;
+                Placement placement = (itc != null ? itc.getPlacement(assignment, t, r) :
+                    new Placement(lecture, lecture.timeLocations().get(t), r < 0 ? null : lecture.roomLocations().get(r)));
+                if (itc == null && !placement.isValid()) continue;
+                if (model.inConflict(assignment, placement)) continue;
+                if (iHC && placement.toDouble(assignment) > oldValue) continue;
+                return new SimpleNeighbour<Lecture, Placement>(lecture, placement);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Number of candidate moves of the given class
+     */
+    protected abstract int getNrCandidates(Lecture lecture);
+
+    /**
+     * Time index of the given candidate
+     * @param timeIndex current time index
+     * @param candidate candidate index, between 0 and {@link #getNrCandidates(Lecture)} (excluded)
+     */
+    protected abstract int getTimeIndex(int timeIndex, int candidate);
+
+    /**
+     * Room index of the given candidate
+     * @param roomIndex current room index, -1 when the class does not need a room
+     * @param candidate candidate index, between 0 and {@link #getNrCandidates(Lecture)} (excluded)
+     */
+    protected abstract int getRoomIndex(int roomIndex, int candidate);
+}
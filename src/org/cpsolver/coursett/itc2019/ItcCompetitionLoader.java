@@ -122,6 +122,10 @@ public class ItcCompetitionLoader extends TimetableLoader {
 		getModel().getProperties().setProperty("Placement.FlexibleConstrPreferenceWeight1", optimizationEl.attributeValue("distribution", "10"));
 		getModel().getProperties().setProperty("Placement.FlexibleConstrPreferenceWeight2", optimizationEl.attributeValue("distribution", "10"));
 		getModel().getProperties().setProperty("FlexibleConstraint.Weight", optimizationEl.attributeValue("distribution", "10"));
+		getModel().getProperties().setProperty("ITC2019.TimeWeight", optimizationEl.attributeValue("time", "2"));
+		getModel().getProperties().setProperty("ITC2019.RoomWeight", optimizationEl.attributeValue("room", "1"));
+		getModel().getProperties().setProperty("ITC2019.DistributionWeight", optimizationEl.attributeValue("distribution", "10"));
+		getModel().getProperties().setProperty("ITC2019.StudentWeight", optimizationEl.attributeValue("student", "5"));
 		double hardConflictFraction = getModel().getProperties().getPropertyDouble("ITC2019.HardStudentConflicts", 0.8);
 		double softConflictFraction = 1.0 - hardConflictFraction;
 		getModel().getProperties().setProperty("Comparator.StudentConflictWeight", String.valueOf(softConflictFraction*Integer.parseInt(optimizationEl.attributeValue("student", "5"))));
@@ -137,6 +141,7 @@ public class ItcCompetitionLoader extends TimetableLoader {
 			c.configure(getModel().getProperties());
 		
 		Map<Long, RoomConstraint> roomConstraints = new HashMap<Long, RoomConstraint>();
+		Map<Long, Map<Long, Integer>> travelTimes = new HashMap<Long, Map<Long, Integer>>();
 		long unAvId = 0l;
 		for (Iterator<?> i = root.element("rooms").elementIterator("room"); i.hasNext(); ) {
 			Element roomEl = (Element)i.next();
@@ -155,6 +160,12 @@ public class ItcCompetitionLoader extends TimetableLoader {
 				getModel().getDistanceMetric().addTravelTime(room.getResourceId(),
                         Long.valueOf(travelEl.attributeValue("room")),
                         5 * Integer.valueOf(travelEl.attributeValue("value")));
+				Map<Long, Integer> travel = travelTimes.get(room.getResourceId());
+				if (travel == null) {
+					travel = new HashMap<Long, Integer>();
+					travelTimes.put(room.getResourceId(), travel);
+				}
+				travel.put(Long.valueOf(travelEl.attributeValue("room")), Integer.valueOf(travelEl.attributeValue("value")));
 			}
 			
 			for (Iterator<?> j = roomEl.elementIterator("unavailable"); j.hasNext(); ) {
@@ -215,7 +226,7 @@ public class ItcCompetitionLoader extends TimetableLoader {
 						List<TimeLocation> times = new ArrayList<TimeLocation>();
 						for (Iterator<?> m = classEl.elementIterator("time"); m.hasNext(); ) {
 							Element timeEl = (Element)m.next();
-							TimeLocation time = new TimeLocation(
+							TimeLocation time = new ItcTimeLocation(
 									Integer.parseInt(timeEl.attributeValue("days"), 2), //days
 									Integer.valueOf(timeEl.attributeValue("start")), //start
 									Integer.valueOf(timeEl.attributeValue("length")), // length
@@ -242,7 +253,7 @@ public class ItcCompetitionLoader extends TimetableLoader {
 									rc.getCapacity(), rc.getPosX(), rc.getPosY(), rc.getIgnoreTooFar(), rc);
 							rooms.add(room);
 						}
-						Lecture lecture = new Lecture(
+						Lecture lecture = new ItcLecture(
 								Long.valueOf(classEl.attributeValue("id")), // class id 
 								0l, // solver group id
 								subpartId, // subpart id
@@ -363,6 +374,8 @@ public class ItcCompetitionLoader extends TimetableLoader {
 				iProgress.warn("Distrubtion type " + distributionEl.attributeValue("type") + " not implemented.");
 			}
 			if (constraint != null) {
+				if (constraint instanceof ItcDistribution)
+					((ItcDistribution)constraint).setDistributionType(reference.replaceAll("\\(.*\\)", ""));
 				for (Iterator<?> j = distributionEl.elementIterator("class"); j.hasNext(); ) {
 					Element classEl = (Element)j.next();
 					Lecture lecture = lectures.get(Long.valueOf(classEl.attributeValue("id")));
@@ -398,6 +411,17 @@ public class ItcCompetitionLoader extends TimetableLoader {
 			}
 		}
 		
+        // student conflict table must be in place before the solution is assigned (criteria are updated incrementally)
+        ItcStudentConflictTable table = null;
+        for (Criterion<Lecture, Placement> criterion: getModel().getCriteria()) {
+        	if (criterion instanceof ItcStudentConflictCriterion) {
+        		if (table == null)
+        			table = new ItcStudentConflictTable(getModel().variables(), travelTimes,
+        					getModel().getProperties().getPropertyInt("ITC2019.StudentConflictTableLimit", 5000));
+        		((ItcStudentConflictCriterion)criterion).setConflictTable(table);
+        	}
+        }
+        
         Element solutionEl = root.element("solution");
         if (getModel().getProperties().getProperty("Load.Solution") != null) {
         	File solutionFile = new File(getModel().getProperties().getProperty("Load.Solution"));
@@ -506,10 +530,20 @@ public class ItcCompetitionLoader extends TimetableLoader {
             }
         }
         
-        if (getModel().getProperties().getPropertyBoolean("General.PurgeInvalidPlacements", true)) {
-            for (Lecture lecture : getModel().variables()) {
-                lecture.purgeInvalidValues(false);
+        boolean lazyDomains = getModel().getProperties().getPropertyBoolean("ITC2019.LazyDomains", false);
+        boolean purge = getModel().getProperties().getPropertyBoolean("General.PurgeInvalidPlacements", true);
+        int nrLazy = 0;
+        for (Lecture lecture : getModel().variables()) {
+            // lazy domain only contains valid placements, no purging is needed
+            if (lazyDomains && lecture instanceof ItcLecture && ((ItcLecture)lecture).useLazyDomain()) {
+                nrLazy ++; continue;
             }
+            if (purge)
+                lecture.purgeInvalidValues(false);
+            if (lecture instanceof ItcLecture)
+                ((ItcLecture)lecture).buildPlacementIndex(getAssignment());
         }
+        if (lazyDomains)
+            iProgress.info("Using lazy domains for " + nrLazy + " of " + getModel().variables().size() + " classes.");
 	}
 }
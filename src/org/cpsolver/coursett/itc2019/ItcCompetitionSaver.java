@@ -12,7 +12,7 @@ import org.cpsolver.coursett.constraint.GroupConstraint;
 import org.cpsolver.coursett.model.Lecture;
 import org.cpsolver.coursett.model.Placement;
 import org.cpsolver.coursett.model.Student;
-import org.cpsolver.ifs.model.Constraint;
+import org.cpsolver.coursett.model.TimetableModel;
 import org.cpsolver.ifs.solver.Solver;
 import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
@@ -28,6 +28,7 @@ import org.dom4j.io.XMLWriter;
 public class ItcCompetitionSaver extends TimetableSaver {
 	private static Logger sLog = org.apache.logging.log4j.LogManager.getLogger(ItcCompetitionSaver.class);
     private File iOutputFolder = null;
+    private ItcPenaltyReport iReport = null;
 
     public ItcCompetitionSaver(Solver<Lecture, Placement> solver) {
         super(solver);
@@ -54,6 +55,9 @@ public class ItcCompetitionSaver extends TimetableSaver {
         if (outFile == null)
             outFile = new File(iOutputFolder, "solution.xml");
         outFile.getParentFile().mkdirs();
+        
+        if (getModel().getProperties().getPropertyBoolean("ItcResection.BeforeSave", true) && !ItcStudentResectioning.isParallel(getModel().getProperties()))
+        	new ItcStudentResectioning(getSolver(), getModel().getProperties()).resection((TimetableModel)getModel(), getAssignment());
 
         Document document = DocumentHelper.createDocument();
         
@@ -75,6 +79,9 @@ public class ItcCompetitionSaver extends TimetableSaver {
             } catch (IOException e) {
             }
         }
+        
+        if (iReport != null && getModel().getProperties().getPropertyBoolean("ITC2019.PenaltyReport", true))
+        	iReport.save(new File(outFile.getParentFile(), "penalties.json"));
     }
     
     private String getDaysStr(int days) {
@@ -109,21 +116,25 @@ public class ItcCompetitionSaver extends TimetableSaver {
         	}
         }
         
-        for (Constraint<Lecture, Placement> c: getModel().constraints()) {
-        	if (c.isHard()) continue;
-        	if (c instanceof GroupConstraint) {
-        		GroupConstraint gc = (GroupConstraint)c;
-        		int pref = gc.getCurrentPreference(getAssignment());
-        		if (pref != 0)
-        			sLog.info(gc + " has penalty " + pref);
-        	} else if (c instanceof FlexibleConstraint) {
-        		FlexibleConstraint fc = (FlexibleConstraint)c;
-        		double viol = fc.getNrViolations(getAssignment(), null, null);
-        		double pref = fc.getCurrentPreference(getAssignment(), null, null);
-        		if (viol != 0 || pref != 0)
-        			sLog.info(toString(fc) + " has penalty " + pref + " (violations " + viol + ")");
+        iReport = new ItcPenaltyReport((TimetableModel)getModel(), getAssignment());
+        for (ItcPenaltyReport.ConstraintPenalty cp: iReport.getConstraints()) {
+        	if (cp.getConstraint() instanceof GroupConstraint) {
+        		if (cp.getPenalty() != 0)
+        			sLog.info(cp.getConstraint() + " has penalty " + Math.round(cp.getPenalty()));
+        	} else if (cp.getConstraint() instanceof FlexibleConstraint) {
+        		if (cp.getViolations() != 0 || cp.getPenalty() != 0)
+        			sLog.info(toString((FlexibleConstraint)cp.getConstraint()) + " has penalty " + cp.getPenalty() + " (violations " + cp.getViolations() + ")");
         	}
         }
+        sLog.info("Total penalty: " + iReport.getTotalPenalty() + " (time " + iReport.getTimePenalty() + ", room " + iReport.getRoomPenalty() +
+        		", distribution " + iReport.getDistributionPenalty() + ", student " + iReport.getStudentPenalty() + ")");
+    }
+    
+    /**
+     * Penalty breakdown of the last saved solution
+     */
+    public ItcPenaltyReport getPenaltyReport() {
+    	return iReport;
     }
     
     public String toString(FlexibleConstraint fc) {
@@ -0,0 +1,124 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.model.Neighbour;
+
+/**
+ * Neighbour that assigns several classes at once. The value is computed by {@link #evaluate(Model, Assignment, Map, long)},
+ * or by a {@link Tentative} change, which applies the move to the assignment, so that all the interactions between
+ * the moved classes are taken into account, and then restores the original placements (with their original iterations).
+ *
+ */
+public class ItcCompoundNeighbour implements Neighbour<Lecture, Placement> {
+    private Map<Lecture, Placement> iAssignments;
+    private double iValue;
+
+    public ItcCompoundNeighbour(Map<Lecture, Placement> assignments, double value) {
+        iAssignments = assignments;
+        iValue = value;
+    }
+
+    /**
+     * Tentatively assign the given placements (unassigning the classes first), compute the change in the total value,
+     * and restore the original assignment.
+     * @return compound neighbour with the computed value, null if the new placements are in a hard conflict
+     */
+    public static ItcCompoundNeighbour evaluate(Model<Lecture, Placement> model, Assignment<Lecture, Placement> assignment, Map<Lecture, Placement> placements, long iteration) {
+        Tentative tentative = new Tentative(model, assignment, placements.keySet(), iteration);
+        try {
+            for (Placement placement: placements.values())
+                if (!tentative.assign(placement)) return null;
+            return new ItcCompoundNeighbour(placements, tentative.getValue());
+        } finally {
+            tentative.restore();
+        }
+    }
+
+    /**
+     * Tentative change of an assignment: the given classes are unassigned on creation, new placements can then be assigned
+     * and the change in the total value computed, {@link #restore()} puts the original placements back (with their original
+     * iterations). Must be restored before the assignment is used for anything else.
+     */
+    public static class Tentative {
+        private Model<Lecture, Placement> iModel;
+        private Assignment<Lecture, Placement> iAssignment;
+        private long iIteration;
+        private double iBefore;
+        private List<Lecture> iLectures;
+        private Map<Placement, Long> iOld = new HashMap<Placement, Long>();
+
+        public Tentative(Model<Lecture, Placement> model, Assignment<Lecture, Placement> assignment, Collection<Lecture> lectures, long iteration) {
+            iModel = model; iAssignment = assignment; iIteration = iteration;
+            iLectures = new ArrayList<Lecture>(lectures);
+            iBefore = model.getTotalValue(assignment);
+            for (Lecture lecture: iLectures) {
+                Placement placement = assignment.getValue(lecture);
+                if (placement != null) {
+                    iOld.put(placement, assignment.getIteration(lecture));
+                    assignment.unassign(iteration, lecture);
+                }
+            }
+        }
+
+        /**
+         * Assign the given placement (of one of the classes)
+         * @return false (and nothing is assigned) if the placement is in a hard conflict
+         */
+        public boolean assign(Placement placement) {
+            if (iModel.inConflict(iAssignment, placement)) return false;
+            iAssignment.assign(iIteration, placement);
+            return true;
+        }
+
+        /** Change in the total value since the creation of this tentative change */
+        public double getValue() {
+            return iModel.getTotalValue(iAssignment) - iBefore;
+        }
+
+        /** Put the original placements back */
+        public void restore() {
+            for (Lecture lecture: iLectures)
+                if (iAssignment.getValue(lecture) != null)
+                    iAssignment.unassign(iIteration, lecture);
+            for (Map.Entry<Placement, Long> entry: iOld.entrySet())
+                iAssignment.assign(entry.getValue(), entry.getKey());
+        }
+    }
+
+    @Override
+    public void assign(Assignment<Lecture, Placement> assignment, long iteration) {
+        for (Lecture lecture: iAssignments.keySet())
+            if (assignment.getValue(lecture) != null)
+                assignment.unassign(iteration, lecture);
+        for (Placement placement: iAssignments.values())
+            assignment.assign(iteration, placement);
+    }
+
+    @Override
+    public double value(Assignment<Lecture, Placement> assignment) {
+        return iValue;
+    }
+
+    @Override
+    public Map<Lecture, Placement> assignments() {
+        return iAssignments;
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer("Compound{value=" + iValue);
+        for (Placement placement: iAssignments.values())
+            sb.append(", " + placement.variable().getName() + " " + placement.getLongName(false));
+        sb.append("}");
+        return sb.toString();
+    }
+}
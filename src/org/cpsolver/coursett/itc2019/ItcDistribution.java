@@ -0,0 +1,15 @@
+package org.cpsolver.coursett.itc2019;
+
+/**
+ * ITC 2019 distribution constraint, remembers the distribution type of the competition instance
+ * (e.g., SameDays or MaxBlock), so that penalties can be reported by the distribution type.
+ *
+ */
+public interface ItcDistribution {
+
+    /** ITC 2019 distribution type (without parameters) */
+    public String getDistributionType();
+
+    /** Set ITC 2019 distribution type (without parameters) */
+    public void setDistributionType(String type);
+}
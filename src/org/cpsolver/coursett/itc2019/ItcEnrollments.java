@@ -0,0 +1,79 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.cpsolver.coursett.constraint.JenrlConstraint;
+import org.cpsolver.coursett.model.Configuration;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.Student;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.model.Model;
+
+/**
+ * Changes of student enrollments. The enrollments are kept consistent with the joint enrollment constraints:
+ * when a student is dropped from a class, the constraints between the class and the other classes of the student
+ * are decremented; when a student is added to a class, they are incremented (a new constraint is created,
+ * the same way as in {@link ItcCompetitionLoader}, when there is none between the two classes yet).
+ * The {@link ItcPenalizedLectures} index, when registered, is notified about the changed joint enrollment constraints.
+ * <br>
+ * Student enrollments are shared by all the assignments of the model, so the changes should only be made
+ * when there is one solver thread (the joint enrollment constraint contexts of the given assignment are updated).
+ *
+ */
+public class ItcEnrollments {
+
+    /**
+     * Move a student from the given classes into the given classes
+     * @param drop classes the student is to be removed from
+     * @param add classes the student is to be added to
+     */
+    public static void move(Model<Lecture, Placement> model, Assignment<Lecture, Placement> assignment, Student student, Collection<Lecture> drop, Collection<Lecture> add) {
+        Set<Lecture> changed = new HashSet<Lecture>(student.getLectures());
+        changed.addAll(add);
+        for (Lecture lecture: drop) {
+            if (!student.getLectures().contains(lecture)) continue;
+            for (Lecture other: student.getLectures()) {
+                if (other.equals(lecture)) continue;
+                JenrlConstraint jenrl = lecture.jenrlConstraint(other);
+                if (jenrl != null) jenrl.decJenrl(assignment, student);
+            }
+            lecture.removeStudent(assignment, student);
+            student.removeLecture(lecture);
+        }
+        for (Lecture lecture: drop) {
+            Configuration configuration = lecture.getConfiguration();
+            if (configuration == null) continue;
+            boolean enrolled = false;
+            for (Lecture other: student.getLectures())
+                if (configuration.equals(other.getConfiguration())) { enrolled = true; break; }
+            if (!enrolled) student.removeConfiguration(configuration);
+        }
+        for (Lecture lecture: add) {
+            if (student.getLectures().contains(lecture)) continue;
+            for (Lecture other: student.getLectures()) {
+                JenrlConstraint jenrl = lecture.jenrlConstraint(other);
+                if (jenrl == null) {
+                    jenrl = new JenrlConstraint();
+                    if (lecture.getId() < other.getId()) {
+                        jenrl.addVariable(lecture);
+                        jenrl.addVariable(other);
+                    } else {
+                        jenrl.addVariable(other);
+                        jenrl.addVariable(lecture);
+                    }
+                    model.addConstraint(jenrl);
+                }
+                jenrl.incJenrl(assignment, student);
+            }
+            student.addLecture(lecture);
+            if (lecture.getConfiguration() != null)
+                student.addConfiguration(lecture.getConfiguration());
+            lecture.addStudent(assignment, student);
+        }
+        ItcPenalizedLectures penalized = ItcPenalizedLectures.getInstance(model);
+        if (penalized != null) penalized.enrollmentsChanged(assignment, changed);
+    }
+}
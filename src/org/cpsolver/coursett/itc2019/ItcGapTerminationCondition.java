@@ -0,0 +1,64 @@
+package org.cpsolver.coursett.itc2019;
+
+import org.apache.logging.log4j.Logger;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.TimetableModel;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.termination.MPPTerminationCondition;
+import org.cpsolver.ifs.util.DataProperties;
+
+/**
+ * Termination condition that, in addition to the {@link MPPTerminationCondition}, computes an {@link ItcLowerBound}
+ * on the first call and stops the search when the relative gap between the ITC 2019 penalty of the best solution
+ * and the lower bound drops to Termination.MaxGap or below (disabled when negative, the lower bound is then not computed).
+ * The gap is checked (and logged) at most every Termination.GapCheckInterval seconds, at a moment when the current
+ * solution is the best one found so far.
+ *
+ */
+public class ItcGapTerminationCondition extends MPPTerminationCondition<Lecture, Placement> {
+    private static Logger sLog = org.apache.logging.log4j.LogManager.getLogger(ItcGapTerminationCondition.class);
+    private double iMaxGap = -1.0;
+    private long iCheckInterval = 10000;
+    private long iLastCheck = 0;
+    private ItcLowerBound iLowerBound = null;
+    private double iGap = Double.NaN;
+
+    public ItcGapTerminationCondition(DataProperties properties) {
+        super(properties);
+        iMaxGap = properties.getPropertyDouble("Termination.MaxGap", iMaxGap);
+        iCheckInterval = Math.round(1000.0 * properties.getPropertyDouble("Termination.GapCheckInterval", 10.0));
+    }
+
+    @Override
+    public boolean canContinue(Solution<Lecture, Placement> currentSolution) {
+        if (!super.canContinue(currentSolution)) return false;
+        if (iMaxGap < 0.0) return true;
+        TimetableModel model = (TimetableModel)currentSolution.getModel();
+        Assignment<Lecture, Placement> assignment = currentSolution.getAssignment();
+        if (iLowerBound == null) {
+            iLowerBound = new ItcLowerBound(model, assignment);
+            sLog.info("Lower bound: " + iLowerBound);
+            iLastCheck = System.currentTimeMillis();
+        }
+        long now = System.currentTimeMillis();
+        if (now - iLastCheck < iCheckInterval) return true;
+        if (model.nrUnassignedVariables(assignment) > 0 || model.getTotalValue(assignment) > currentSolution.getBestValue()) return true;
+        iLastCheck = now;
+        double penalty = new ItcPenaltyReport(model, assignment).getTotalPenalty();
+        iGap = (penalty <= 0 ? 0.0 : Math.max(0.0, penalty - iLowerBound.getLowerBound()) / penalty);
+        sLog.info("Penalty: " + penalty + ", lower bound: " + iLowerBound.getLowerBound() + ", gap: " + Math.round(10000.0 * iGap) / 100.0 + "%");
+        if (iGap <= iMaxGap) {
+            sLog.info("Optimality gap of " + Math.round(10000.0 * iGap) / 100.0 + "% reached, stopping the search.");
+            return false;
+        }
+        return true;
+    }
+
+    /** Lower bound, null if not computed yet (or when the gap check is disabled) */
+    public ItcLowerBound getLowerBound() { return iLowerBound; }
+
+    /** Last computed relative gap between the penalty of the best solution and the lower bound, NaN if not computed yet */
+    public double getGap() { return iGap; }
+}
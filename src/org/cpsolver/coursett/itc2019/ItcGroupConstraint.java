@@ -2,6 +2,7 @@ package org.cpsolver.coursett.itc2019;
 
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 import org.cpsolver.coursett.Constants;
@@ -18,11 +19,28 @@ import org.cpsolver.ifs.assignment.Assignment;
  * 
  * @author Tomas Muller
  */
-public class ItcGroupConstraint extends GroupConstraint {
+public class ItcGroupConstraint extends GroupConstraint implements ItcDistribution {
+	private String iDistributionType = null;
+	private ItcWeekClasses iWeekClasses = null;
 	
 	public ItcGroupConstraint(Long id, ConstraintTypeInterface type, String preference) {
 		super(id, type, preference);
 	}
+
+	@Override
+	public String getDistributionType() { return iDistributionType; }
+
+	@Override
+	public void setDistributionType(String type) { iDistributionType = type; }
+	
+	/**
+	 * Equivalence classes of the weeks of the semester, the domains of the classes do not change after the problem is loaded
+	 */
+	protected ItcWeekClasses getWeekClasses() {
+		if (iWeekClasses == null)
+			iWeekClasses = new ItcWeekClasses(variables(), ((TimetableModel)getModel()).getWeeks());
+		return iWeekClasses;
+	}
 	
 	@Override
 	public int getCurrentPreference(Assignment<Lecture, Placement> assignment) {
@@ -30,9 +48,10 @@ public class ItcGroupConstraint extends GroupConstraint {
         if (countAssignedVariables(assignment) < 2) return 0; // not enough variable
         if (getType().is(Flag.MAX_HRS_DAY)) { // max hours a day
             int over = 0;
+            ItcWeekClasses weeks = getWeekClasses();
             for (int dayCode: Constants.DAY_CODES) {
-                for (BitSet week: ((TimetableModel)getModel()).getWeeks())
-                    over += Math.max(0, nrSlotsADay(assignment, dayCode, week, null, null) - getType().getMax());
+                for (int w = 0; w < weeks.size(); w++)
+                    over += weeks.getMultiplicity(w) * Math.max(0, nrSlotsADay(assignment, dayCode, weeks.getWeek(w), null, null) - getType().getMax());
             }
             return (over > 0 ? Math.abs(getPreference()) * over / ((TimetableModel)getModel()).getWeeks().size() : 0);
         }
@@ -64,10 +83,11 @@ public class ItcGroupConstraint extends GroupConstraint {
             unassignments.put(placement.variable(), null);
             int after = 0;
             int before = 0;
+            ItcWeekClasses weekClasses = getWeekClasses();
             for (int dayCode: Constants.DAY_CODES) {
-                for (BitSet week: ((TimetableModel)getModel()).getWeeks()) {
-                    after += Math.max(0, nrSlotsADay(assignment, dayCode, week, assignments, null) - getType().getMax());
-                    before += Math.max(0, nrSlotsADay(assignment, dayCode, week, unassignments, null) - getType().getMax());
+                for (int w = 0; w < weekClasses.size(); w++) {
+                    after += weekClasses.getMultiplicity(w) * Math.max(0, nrSlotsADay(assignment, dayCode, weekClasses.getWeek(w), assignments, null) - getType().getMax());
+                    before += weekClasses.getMultiplicity(w) * Math.max(0, nrSlotsADay(assignment, dayCode, weekClasses.getWeek(w), unassignments, null) - getType().getMax());
                 }
             }
             int weeks = ((TimetableModel)getModel()).getWeeks().size();
@@ -99,6 +119,30 @@ public class ItcGroupConstraint extends GroupConstraint {
                 (nrViolatedPairsBefore > 0 ? Math.abs(getPreference()) * nrViolatedPairsBefore : 0);
     }
 	
+	/**
+	 * Penalty that cannot be avoided, i.e., number of pairs of classes for which no combination of their placements
+	 * satisfies the constraint (times the penalty). Pairs with more than the given number of combinations are not checked.
+	 */
+	public int getUnavoidablePenalty(Assignment<Lecture, Placement> assignment, long limit) {
+		if (isHard() || getType().is(Flag.MAX_HRS_DAY) || getType().is(Flag.BACK_TO_BACK)) return 0;
+		int nrViolatedPairs = 0;
+		for (Lecture v1 : variables()) {
+			List<Placement> d1 = v1.values(assignment);
+			if (d1.isEmpty()) continue;
+			for (Lecture v2 : variables()) {
+				if (v1.getId() >= v2.getId()) continue;
+				List<Placement> d2 = v2.values(assignment);
+				if (d2.isEmpty() || (long)d1.size() * d2.size() > limit) continue;
+				boolean satisfiable = false;
+				p1: for (Placement p1: d1)
+					for (Placement p2: d2)
+						if (isSatisfiedPair(assignment, p1, p2)) { satisfiable = true; break p1; }
+				if (!satisfiable) nrViolatedPairs ++;
+			}
+		}
+		return Math.abs(getPreference()) * nrViolatedPairs;
+	}
+	
     @Override
     public GroupConstraintContext createAssignmentContext(Assignment<Lecture, Placement> assignment) {
         return new ItcGroupConstraintContext(assignment);
@@ -117,6 +161,11 @@ public class ItcGroupConstraint extends GroupConstraint {
                 getModel().getCriterion(DistributionPreferences.class).inc(assignment, iLastPreference);
             }
         }
+        
+        /** Current penalty of the constraint, as last updated */
+        public int getLastPreference() {
+            return iLastPreference;
+        }
     }
 	
 	@Override
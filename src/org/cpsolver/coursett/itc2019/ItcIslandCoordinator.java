@@ -0,0 +1,166 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.TimetableModel;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+
+/**
+ * Coordinator of the island model. It loads the problem, listens on Island.Port for the {@link ItcIslandWorker}s,
+ * and keeps the best solution received from them. Each improvement is saved using the {@link ItcCompetitionSaver}
+ * and sent to all the other workers (as a migrant). A solution that cannot be fully applied is rejected and
+ * the previous solution is restored.
+ * <br>
+ * Usage: ItcIslandCoordinator [configuration] [input file] [output dir]
+ *
+ */
+public class ItcIslandCoordinator {
+    private static Logger sLog = org.apache.logging.log4j.LogManager.getLogger(ItcIslandCoordinator.class);
+    private TimetableModel iModel;
+    private Assignment<Lecture, Placement> iAssignment;
+    private ItcCompetitionSaver iSaver;
+    private ItcIslandSolution iBest = null;
+    private byte[] iBestData = null;
+    private List<Island> iIslands = new ArrayList<Island>();
+
+    public ItcIslandCoordinator(DataProperties properties) throws Exception {
+        // the saved solution must be the one received, do not re-section the students before saving
+        properties.setProperty("ItcResection.BeforeSave", "false");
+        iModel = new TimetableModel(properties);
+        iAssignment = new DefaultSingleAssignment<Lecture, Placement>();
+        new ItcCompetitionLoader(iModel, iAssignment).load();
+        Solver<Lecture, Placement> solver = new Solver<Lecture, Placement>(properties);
+        solver.setInitalSolution(new Solution<Lecture, Placement>(iModel, iAssignment));
+        iSaver = new ItcCompetitionSaver(solver);
+    }
+
+    /** Accept connections of the workers */
+    public void run(int port) throws IOException {
+        ServerSocket server = new ServerSocket(port);
+        sLog.info("Island coordinator listening on port " + port);
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Island island = new Island(socket);
+                synchronized (this) {
+                    iIslands.add(island);
+                    if (iBestData != null) island.send(iBestData);
+                }
+                Thread thread = new Thread(island, "Island-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+                sLog.info("Island " + socket.getRemoteSocketAddress() + " connected.");
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    protected synchronized void received(Island source, byte[] data) {
+        try {
+            ItcIslandSolution solution = ItcIslandSolution.read(data);
+            if (!solution.isBetterThan(iBest)) return;
+            ItcIslandSolution previous = ItcIslandSolution.create(iModel, iAssignment);
+            if (!solution.apply(iModel, iAssignment, 0)) {
+                sLog.warn("Solution from " + source + " rejected: it does not match the problem or some placements could not be assigned.");
+                if (!previous.apply(iModel, iAssignment, 0))
+                    sLog.error("Failed to restore the previous solution.");
+                return;
+            }
+            iBest = solution;
+            iBestData = data;
+            sLog.info("New best solution from " + source + ": value " + solution.getValue() + (solution.getNrUnassigned() > 0 ? ", " + solution.getNrUnassigned() + " unassigned" : ""));
+            iSaver.save();
+            for (Island island: new ArrayList<Island>(iIslands))
+                if (island != source) island.send(data);
+        } catch (Exception e) {
+            sLog.error("Failed to process solution from " + source + ": " + e.getMessage(), e);
+        }
+    }
+
+    protected synchronized void disconnected(Island island) {
+        iIslands.remove(island);
+        sLog.info("Island " + island + " disconnected.");
+    }
+
+    private class Island implements Runnable {
+        private Socket iSocket;
+        private DataInputStream iIn;
+        private DataOutputStream iOut;
+
+        Island(Socket socket) throws IOException {
+            iSocket = socket;
+            iIn = new DataInputStream(socket.getInputStream());
+            iOut = new DataOutputStream(socket.getOutputStream());
+        }
+
+        void send(byte[] data) {
+            try {
+                synchronized (iOut) {
+                    iOut.writeInt(data.length);
+                    iOut.write(data);
+                    iOut.flush();
+                }
+            } catch (IOException e) {
+                sLog.warn("Failed to send solution to " + this + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    byte[] data = new byte[iIn.readInt()];
+                    iIn.readFully(data);
+                    received(this, data);
+                }
+            } catch (IOException e) {
+            } finally {
+                try { iSocket.close(); } catch (IOException e) {}
+                disconnected(this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(iSocket.getRemoteSocketAddress());
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            DataProperties properties = new DataProperties();
+            FileInputStream is = new FileInputStream(args[0]);
+            try {
+                properties.load(is);
+            } finally {
+                is.close();
+            }
+            properties.putAll(System.getProperties());
+            if (args.length > 1)
+                properties.setProperty("General.Input", args[1]);
+            if (args.length > 2)
+                properties.setProperty("General.Output", args[2]);
+            ItcIslandCoordinator coordinator = new ItcIslandCoordinator(properties);
+            int port = properties.getPropertyInt("Island.Port", 0);
+            coordinator.run(port <= 0 ? 5555 : port);
+        } catch (Exception e) {
+            sLog.error("Island coordinator failed: " + e.getMessage(), e);
+        }
+    }
+}
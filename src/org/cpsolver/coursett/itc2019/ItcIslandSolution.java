@@ -0,0 +1,236 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.Student;
+import org.cpsolver.coursett.model.TimetableModel;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.solution.Solution;
+
+/**
+ * Compact (binary) encoding of an ITC 2019 solution that is exchanged between the islands of the island model
+ * (see {@link ItcIslandCoordinator} and {@link ItcIslandWorker}). The classes are identified by their position
+ * in the model variables and their placements by the time and room indexes, so all the processes must load
+ * the same instance. The encoding also contains the student enrollments (for each student, ordered by the student id,
+ * the positions of its classes) and the value of the solution (total value of the model, which is comparable between
+ * the islands as long as they use the same criteria weights). Indexes are written as variable-length integers.
+ *
+ */
+public class ItcIslandSolution {
+    private int iNrUnassigned;
+    private double iValue;
+    private int[] iTimes, iRooms;
+    private int[][] iEnrollments;
+
+    private ItcIslandSolution() {}
+
+    /** Encode the given assignment */
+    public static ItcIslandSolution create(TimetableModel model, Assignment<Lecture, Placement> assignment) {
+        List<Lecture> lectures = model.variables();
+        Placement[] placements = new Placement[lectures.size()];
+        for (int i = 0; i < lectures.size(); i++)
+            placements[i] = assignment.getValue(lectures.get(i));
+        return create(model, placements, model.getTotalValue(assignment));
+    }
+
+    /** Encode the best solution saved (the placements are taken from {@link Lecture#getBestAssignment()}) */
+    public static ItcIslandSolution create(TimetableModel model, Solution<Lecture, Placement> solution) {
+        List<Lecture> lectures = model.variables();
+        Placement[] placements = new Placement[lectures.size()];
+        for (int i = 0; i < lectures.size(); i++)
+            placements[i] = lectures.get(i).getBestAssignment();
+        return create(model, placements, solution.getBestValue());
+    }
+
+    private static ItcIslandSolution create(TimetableModel model, Placement[] placements, double value) {
+        ItcIslandSolution solution = new ItcIslandSolution();
+        List<Lecture> lectures = model.variables();
+        solution.iValue = value;
+        solution.iTimes = new int[lectures.size()];
+        solution.iRooms = new int[lectures.size()];
+        Map<Lecture, Integer> index = new HashMap<Lecture, Integer>();
+        for (int i = 0; i < lectures.size(); i++) {
+            Lecture lecture = lectures.get(i);
+            Placement placement = placements[i];
+            if (placement == null) solution.iNrUnassigned ++;
+            solution.iTimes[i] = (placement == null ? -1 : lecture.timeLocations().indexOf(placement.getTimeLocation()));
+            solution.iRooms[i] = (placement == null || placement.getRoomLocation() == null ? -1 : lecture.roomLocations().indexOf(placement.getRoomLocation()));
+            index.put(lecture, i);
+        }
+        List<Student> students = getStudents(model);
+        solution.iEnrollments = new int[students.size()][];
+        for (int i = 0; i < students.size(); i++) {
+            int[] enrollment = new int[students.get(i).getLectures().size()];
+            int j = 0;
+            for (Lecture lecture: students.get(i).getLectures())
+                enrollment[j++] = index.get(lecture);
+            Arrays.sort(enrollment);
+            solution.iEnrollments[i] = enrollment;
+        }
+        return solution;
+    }
+
+    /** Students of the model, ordered by their ids (the same order in all the processes) */
+    private static List<Student> getStudents(TimetableModel model) {
+        List<Student> students = new ArrayList<Student>(model.getAllStudents());
+        Collections.sort(students, new Comparator<Student>() {
+            @Override
+            public int compare(Student s1, Student s2) {
+                return s1.getId().compareTo(s2.getId());
+            }
+        });
+        return students;
+    }
+
+    /** Decode a solution */
+    public static ItcIslandSolution read(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        ItcIslandSolution solution = new ItcIslandSolution();
+        solution.iNrUnassigned = in.readInt();
+        solution.iValue = in.readDouble();
+        int nrLectures = in.readInt();
+        solution.iTimes = new int[nrLectures];
+        solution.iRooms = new int[nrLectures];
+        for (int i = 0; i < nrLectures; i++) {
+            solution.iTimes[i] = readIndex(in);
+            solution.iRooms[i] = readIndex(in);
+        }
+        solution.iEnrollments = new int[in.readInt()][];
+        for (int i = 0; i < solution.iEnrollments.length; i++) {
+            solution.iEnrollments[i] = new int[readIndex(in) + 1];
+            int last = -1;
+            for (int j = 0; j < solution.iEnrollments[i].length; j++) {
+                // class positions are sorted, only the differences are written
+                last += readIndex(in) + 1;
+                if (last >= nrLectures) throw new IOException("Class index " + last + " out of range (" + nrLectures + " classes).");
+                solution.iEnrollments[i][j] = last;
+            }
+        }
+        return solution;
+    }
+
+    /** Encode this solution */
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(iNrUnassigned);
+        out.writeDouble(iValue);
+        out.writeInt(iTimes.length);
+        for (int i = 0; i < iTimes.length; i++) {
+            writeIndex(out, iTimes[i]);
+            writeIndex(out, iRooms[i]);
+        }
+        out.writeInt(iEnrollments.length);
+        for (int[] enrollment: iEnrollments) {
+            writeIndex(out, enrollment.length - 1);
+            int last = -1;
+            for (int index: enrollment) {
+                writeIndex(out, index - last - 1);
+                last = index;
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /** Write an index (-1 for none) as a variable-length integer, 7 bits per byte */
+    private static void writeIndex(DataOutputStream out, int index) throws IOException {
+        if (index < -1 || index == Integer.MAX_VALUE) throw new IOException("Index " + index + " out of range.");
+        int value = index + 1;
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /** Read an index written by {@link #writeIndex(DataOutputStream, int)} */
+    private static int readIndex(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value - 1;
+        }
+        throw new IOException("Malformed index.");
+    }
+
+    /** Number of unassigned classes */
+    public int getNrUnassigned() { return iNrUnassigned; }
+
+    /** Value of the solution */
+    public double getValue() { return iValue; }
+
+    /** Compare by the number of unassigned classes first, value second */
+    public boolean isBetterThan(ItcIslandSolution other) {
+        if (other == null) return true;
+        if (iNrUnassigned != other.iNrUnassigned) return iNrUnassigned < other.iNrUnassigned;
+        return iValue < other.iValue;
+    }
+
+    /**
+     * Make the given assignment (and the student enrollments) match this solution. Nothing is changed when the solution
+     * does not match the model. When some placement cannot be assigned, the remaining placements are still assigned,
+     * the student enrollments are not changed, and it is up to the caller to restore the previous solution
+     * (e.g., by applying a solution created before).
+     * @return false if the solution does not match the model or if some placement could not be assigned
+     */
+    public boolean apply(TimetableModel model, Assignment<Lecture, Placement> assignment, long iteration) {
+        List<Lecture> lectures = model.variables();
+        if (lectures.size() != iTimes.length) return false;
+        for (int i = 0; i < lectures.size(); i++)
+            if (iTimes[i] >= lectures.get(i).timeLocations().size() || iRooms[i] >= lectures.get(i).roomLocations().size()) return false;
+        List<Student> students = getStudents(model);
+        if (students.size() != iEnrollments.length) return false;
+
+        List<Placement> placements = new ArrayList<Placement>();
+        for (int i = 0; i < lectures.size(); i++) {
+            Lecture lecture = lectures.get(i);
+            Placement current = assignment.getValue(lecture);
+            if (iTimes[i] < 0) {
+                if (current != null) assignment.unassign(iteration, lecture);
+                continue;
+            }
+            if (current != null && current.getTimeLocation().equals(lecture.timeLocations().get(iTimes[i])) &&
+                    (iRooms[i] < 0 ? current.getRoomLocation() == null : lecture.roomLocations().get(iRooms[i]).equals(current.getRoomLocation())))
+                continue;
+            if (current != null) assignment.unassign(iteration, lecture);
+            placements.add(new Placement(lecture, lecture.timeLocations().get(iTimes[i]), iRooms[i] < 0 ? null : lecture.roomLocations().get(iRooms[i])));
+        }
+        boolean complete = true;
+        for (Placement placement: placements) {
+            if (model.inConflict(assignment, placement)) { complete = false; continue; }
+            assignment.assign(iteration, placement);
+        }
+        if (!complete) return false;
+
+        for (int i = 0; i < students.size(); i++) {
+            Student student = students.get(i);
+            Set<Lecture> enrollment = new HashSet<Lecture>();
+            for (int index: iEnrollments[i])
+                enrollment.add(lectures.get(index));
+            Set<Lecture> drop = new HashSet<Lecture>(student.getLectures());
+            drop.removeAll(enrollment);
+            Set<Lecture> add = new HashSet<Lecture>(enrollment);
+            add.removeAll(student.getLectures());
+            if (!drop.isEmpty() || !add.isEmpty())
+                ItcEnrollments.move(model, assignment, student, drop, add);
+        }
+        return true;
+    }
+}
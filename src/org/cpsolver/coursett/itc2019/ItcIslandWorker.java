@@ -0,0 +1,198 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.logging.log4j.Logger;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.TimetableModel;
+import org.cpsolver.ifs.extension.Extension;
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solution.SolutionListener;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+
+/**
+ * Worker of the island model. When Island.Port is set, the worker connects to the {@link ItcIslandCoordinator}
+ * at Island.Host and Island.Port. Every Island.Interval seconds, it sends the best solution when it is better
+ * than the last one exchanged, and it replaces the current solution with the best solution received from the coordinator
+ * (a migrant) when the migrant is better than the best solution. The best solution is encoded at most once
+ * per exchange, only when it has changed. Migrants are received by a daemon thread, but they are only applied by
+ * {@link #exchange(Solution)}, which is called on the solver thread after each iteration (the worker is registered
+ * as a listener of the current solution). When a migrant cannot be applied, the current solution is restored.
+ * <br>
+ * The worker needs one solver thread (Parallel.NrSolvers=1) as the student enrollments are changed as well,
+ * it does not connect to the coordinator otherwise.
+ *
+ */
+public class ItcIslandWorker extends Extension<Lecture, Placement> implements SolutionListener<Lecture, Placement> {
+    private static Logger sLog = org.apache.logging.log4j.LogManager.getLogger(ItcIslandWorker.class);
+    private long iInterval = 10000;
+    private long iLastExchange = 0;
+    private Socket iSocket = null;
+    private volatile DataOutputStream iOut = null;
+    private ItcIslandSolution iLast = null;
+    private ItcIslandSolution iBest = null;
+    private boolean iBestChanged = false;
+    private ItcIslandSolution iMigrant = null;
+
+    public ItcIslandWorker(Solver<Lecture, Placement> solver, DataProperties properties) {
+        super(solver, properties);
+        iInterval = Math.round(1000.0 * properties.getPropertyDouble("Island.Interval", 10.0));
+        int port = properties.getPropertyInt("Island.Port", 0);
+        if (port <= 0) return;
+        if (ItcStudentResectioning.isParallel(properties)) {
+            sLog.warn("Island model is disabled: it requires one solver thread (Parallel.NrSolvers=1).");
+            return;
+        }
+        String host = properties.getProperty("Island.Host", "localhost");
+        try {
+            iSocket = new Socket(host, port);
+            iSocket.setTcpNoDelay(true);
+            iOut = new DataOutputStream(iSocket.getOutputStream());
+            Thread reader = new Thread(new Reader(new DataInputStream(iSocket.getInputStream())), "IslandReader");
+            reader.setDaemon(true);
+            reader.start();
+            sLog.info("Connected to island coordinator at " + host + ":" + port);
+        } catch (IOException e) {
+            sLog.error("Unable to connect to island coordinator at " + host + ":" + port + ": " + e.getMessage(), e);
+            iSocket = null; iOut = null;
+        }
+    }
+
+    /** Find the worker among the extensions of the given solver, null if not registered */
+    public static ItcIslandWorker getInstance(Solver<Lecture, Placement> solver) {
+        for (Extension<Lecture, Placement> extension: solver.getExtensions())
+            if (extension instanceof ItcIslandWorker) return (ItcIslandWorker)extension;
+        return null;
+    }
+
+    @Override
+    public void register(Model<Lecture, Placement> model) {
+        super.register(model);
+        if (isConnected()) getSolver().currentSolution().addSolutionListener(this);
+    }
+
+    @Override
+    public void unregister(Model<Lecture, Placement> model) {
+        super.unregister(model);
+        if (getSolver().currentSolution() != null) getSolver().currentSolution().removeSolutionListener(this);
+    }
+
+    /** True if connected to the coordinator */
+    public boolean isConnected() {
+        return iOut != null;
+    }
+
+    private synchronized void received(ItcIslandSolution migrant) {
+        if (migrant.isBetterThan(iMigrant)) iMigrant = migrant;
+    }
+
+    private synchronized ItcIslandSolution takeMigrant() {
+        ItcIslandSolution migrant = iMigrant;
+        iMigrant = null;
+        return migrant;
+    }
+
+    /**
+     * Exchange solutions with the coordinator (once in Island.Interval seconds): apply the received migrant
+     * when it is better than the best solution, send the best solution when it is better than the last one exchanged.
+     * Must be called on the solver thread.
+     */
+    public void exchange(Solution<Lecture, Placement> solution) {
+        if (!isConnected() || System.currentTimeMillis() - iLastExchange < iInterval) return;
+        iLastExchange = System.currentTimeMillis();
+        TimetableModel model = (TimetableModel)solution.getModel();
+        if (iBestChanged) {
+            iBest = ItcIslandSolution.create(model, solution);
+            iBestChanged = false;
+        }
+        ItcIslandSolution migrant = takeMigrant();
+        if (migrant != null && migrant.isBetterThan(iBest)) {
+            ItcIslandSolution previous = ItcIslandSolution.create(model, solution.getAssignment());
+            if (migrant.apply(model, solution.getAssignment(), solution.getIteration())) {
+                sLog.info("Migrant applied (value " + migrant.getValue() + (iBest == null ? "" : ", best was " + iBest.getValue()) + ")");
+                iLast = migrant;
+                solution.saveBest();
+            } else {
+                sLog.warn("Failed to apply migrant (value " + migrant.getValue() + "), current solution restored.");
+                if (!previous.apply(model, solution.getAssignment(), solution.getIteration()))
+                    sLog.error("Failed to restore the current solution.");
+            }
+            return;
+        }
+        DataOutputStream out = iOut;
+        ItcIslandSolution best = iBest;
+        if (out != null && best != null && best.isBetterThan(iLast)) {
+            try {
+                byte[] data = best.toByteArray();
+                out.writeInt(data.length);
+                out.write(data);
+                out.flush();
+                iLast = best;
+            } catch (IOException e) {
+                sLog.error("Failed to send solution to island coordinator: " + e.getMessage(), e);
+                close();
+            }
+        }
+    }
+
+    @Override
+    public void solutionUpdated(Solution<Lecture, Placement> solution) {
+        exchange(solution);
+    }
+
+    @Override
+    public void getInfo(Solution<Lecture, Placement> solution, Map<String, String> info) {}
+
+    @Override
+    public void getInfo(Solution<Lecture, Placement> solution, Map<String, String> info, Collection<Lecture> variables) {}
+
+    @Override
+    public void bestCleared(Solution<Lecture, Placement> solution) {
+        iBest = null;
+        iBestChanged = false;
+    }
+
+    @Override
+    public void bestSaved(Solution<Lecture, Placement> solution) {
+        iBestChanged = true;
+    }
+
+    @Override
+    public void bestRestored(Solution<Lecture, Placement> solution) {}
+
+    private synchronized void close() {
+        iOut = null;
+        try {
+            if (iSocket != null) iSocket.close();
+        } catch (IOException e) {}
+        iSocket = null;
+    }
+
+    private class Reader implements Runnable {
+        private DataInputStream iIn;
+
+        Reader(DataInputStream in) { iIn = in; }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    byte[] data = new byte[iIn.readInt()];
+                    iIn.readFully(data);
+                    received(ItcIslandSolution.read(data));
+                }
+            } catch (IOException e) {
+                sLog.warn("Connection to island coordinator lost: " + e.getMessage());
+                close();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.ifs.assignment.Assignment;
+
+/**
+ * ITC 2019 class. Unlike the {@link Lecture}, it can use the lazily enumerated {@link ItcPlacementDomain}
+ * instead of keeping all the placements in memory.
+ *
+ */
+public class ItcLecture extends Lecture {
+    private ItcPlacementDomain iDomain = null;
+    private volatile Placement[] iPlacements = null;
+
+    public ItcLecture(Long id, Long solverGroupId, Long schedulingSubpartId, String name,
+            List<TimeLocation> timeLocations, List<RoomLocation> roomLocations, int nrRooms,
+            Placement initialPlacement, int minClassLimit, int maxClassLimit, double room2limitRatio) {
+        super(id, solverGroupId, schedulingSubpartId, name, timeLocations, roomLocations, nrRooms, initialPlacement, minClassLimit, maxClassLimit, room2limitRatio);
+    }
+
+    /**
+     * Switch to the lazily enumerated domain (if applicable). The placements that have been enumerated before
+     * (e.g., by forward checking during the loading of the solution) are released.
+     * @return true if the class is using the lazy domain
+     */
+    public boolean useLazyDomain() {
+        if (iDomain == null && ItcPlacementDomain.isApplicable(this)) {
+            iDomain = new ItcPlacementDomain(this);
+            setValues(null);
+        }
+        return iDomain != null;
+    }
+
+    /** Lazily enumerated domain, null when not used */
+    public ItcPlacementDomain getLazyDomain() {
+        return iDomain;
+    }
+
+    /**
+     * True if the placement of the given time and room index is in the domain of the class (no placement is created)
+     * @param roomIndex room index, -1 when the class does not need a room
+     */
+    public boolean hasPlacement(Assignment<Lecture, Placement> assignment, int timeIndex, int roomIndex) {
+        if (iDomain != null) return iDomain.contains(timeIndex, roomIndex);
+        return getPlacement(assignment, timeIndex, roomIndex) != null;
+    }
+
+    /**
+     * Placement of the given time and room index, null if not in the domain. The existing placement is returned,
+     * only when the lazy domain is used a new placement is created.
+     * @param roomIndex room index, -1 when the class does not need a room
+     */
+    public Placement getPlacement(Assignment<Lecture, Placement> assignment, int timeIndex, int roomIndex) {
+        if (iDomain != null)
+            return (iDomain.contains(timeIndex, roomIndex) ? iDomain.createPlacement(timeIndex, roomIndex) : null);
+        if (timeIndex < 0 || timeIndex >= timeLocations().size() || roomIndex < -1 || roomIndex >= roomLocations().size()) return null;
+        return getPlacementIndex(assignment)[timeIndex * (roomLocations().size() + 1) + roomIndex + 1];
+    }
+
+    /**
+     * Build the index of the placements of the domain by time and room index (called by the loader, once the domain is final).
+     * Nothing is done when the lazy domain is used.
+     */
+    public void buildPlacementIndex(Assignment<Lecture, Placement> assignment) {
+        if (iDomain != null) return;
+        Map<TimeLocation, Integer> times = new IdentityHashMap<TimeLocation, Integer>();
+        for (int i = 0; i < timeLocations().size(); i++)
+            times.put(timeLocations().get(i), i);
+        Map<Long, Integer> rooms = new HashMap<Long, Integer>();
+        for (int i = 0; i < roomLocations().size(); i++)
+            rooms.put(roomLocations().get(i).getId(), i);
+        Placement[] placements = new Placement[timeLocations().size() * (roomLocations().size() + 1)];
+        for (Placement placement: super.values(assignment)) {
+            if (placement.isMultiRoom()) continue;
+            Integer timeIndex = times.get(placement.getTimeLocation());
+            if (timeIndex == null) timeIndex = timeLocations().indexOf(placement.getTimeLocation());
+            Integer roomIndex = (placement.getRoomLocation() == null ? Integer.valueOf(-1) : rooms.get(placement.getRoomLocation().getId()));
+            if (timeIndex < 0 || roomIndex == null) continue;
+            placements[timeIndex * (roomLocations().size() + 1) + roomIndex + 1] = placement;
+        }
+        iPlacements = placements;
+    }
+
+    private Placement[] getPlacementIndex(Assignment<Lecture, Placement> assignment) {
+        // the index is immutable, when it is not built yet, it may be built by more threads at once
+        Placement[] placements = iPlacements;
+        if (placements == null) {
+            buildPlacementIndex(assignment);
+            placements = iPlacements;
+        }
+        return placements;
+    }
+
+    @Override
+    public List<Placement> values(Assignment<Lecture, Placement> assignment) {
+        if (iDomain != null) return iDomain;
+        return super.values(assignment);
+    }
+}
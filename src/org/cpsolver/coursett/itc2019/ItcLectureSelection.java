@@ -0,0 +1,41 @@
+package org.cpsolver.coursett.itc2019;
+
+import org.cpsolver.coursett.heuristics.LectureSelection;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+
+/**
+ * Lecture selection that, when all classes are assigned (e.g., when the construction phase continues with a complete
+ * solution), picks a penalized class from the {@link ItcPenalizedLectures} index with the ItcPenalized.Probability probability
+ * (with the probability proportional to the class penalty). Otherwise, when there is no penalized class, or when
+ * the extension is not registered, the {@link LectureSelection} is used (so the unassigned classes are not delayed).
+ *
+ */
+public class ItcLectureSelection extends LectureSelection {
+    private double iPenalizedProb = 0.5;
+    private ItcPenalizedLectures iPenalized = null;
+
+    public ItcLectureSelection(DataProperties properties) {
+        super(properties);
+        iPenalizedProb = properties.getPropertyDouble("ItcPenalized.Probability", iPenalizedProb);
+    }
+
+    @Override
+    public void init(Solver<Lecture, Placement> solver) {
+        super.init(solver);
+        iPenalized = ItcPenalizedLectures.getInstance(solver);
+    }
+
+    @Override
+    public Lecture selectVariable(Solution<Lecture, Placement> solution) {
+        if (iPenalized != null && solution.getAssignment().nrUnassignedVariables(solution.getModel()) == 0 && ToolBox.random() < iPenalizedProb) {
+            Lecture lecture = iPenalized.select(solution.getAssignment());
+            if (lecture != null) return lecture;
+        }
+        return super.selectVariable(solution);
+    }
+}
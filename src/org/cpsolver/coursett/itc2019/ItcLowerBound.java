@@ -0,0 +1,124 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.Student;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.coursett.model.TimetableModel;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.model.Constraint;
+import org.cpsolver.ifs.util.DataProperties;
+
+/**
+ * Lower bound on the total ITC 2019 penalty, computed from the domains of the classes. It consists of
+ * <ul>
+ * <li>the minimal weighted time and room penalty of each class,</li>
+ * <li>the penalty of soft distribution constraints between pairs of classes that cannot be satisfied
+ * by any combination of their placements (see {@link ItcGroupConstraint#getUnavoidablePenalty(Assignment, long)}),</li>
+ * <li>the student conflicts between classes that every student of a course must attend
+ * (single configuration, single class in the subpart) and that overlap in all their times.</li>
+ * </ul>
+ * Pairs of classes with more than ITC2019.LowerBoundLimit combinations of placements (or times) are not checked.
+ *
+ */
+public class ItcLowerBound {
+    private double iPlacementBound = 0, iDistributionBound = 0, iStudentBound = 0;
+
+    public ItcLowerBound(TimetableModel model, Assignment<Lecture, Placement> assignment) {
+        DataProperties properties = model.getProperties();
+        int timeWeight = properties.getPropertyInt("ITC2019.TimeWeight", 2);
+        int roomWeight = properties.getPropertyInt("ITC2019.RoomWeight", 1);
+        int distributionWeight = properties.getPropertyInt("ITC2019.DistributionWeight", 10);
+        int studentWeight = properties.getPropertyInt("ITC2019.StudentWeight", 5);
+        long limit = properties.getPropertyLong("ITC2019.LowerBoundLimit", 10000l);
+
+        Map<Lecture, List<TimeLocation>> times = new HashMap<Lecture, List<TimeLocation>>();
+        for (Lecture lecture: model.variables()) {
+            double min = Double.MAX_VALUE;
+            Set<TimeLocation> lectureTimes = new LinkedHashSet<TimeLocation>();
+            for (Placement placement: lecture.values(assignment)) {
+                double penalty = timeWeight * placement.getTimeLocation().getPreference() +
+                        (placement.getRoomLocation() == null ? 0 : roomWeight * placement.getRoomLocation().getPreference());
+                if (penalty < min) min = penalty;
+                lectureTimes.add(placement.getTimeLocation());
+            }
+            if (!lectureTimes.isEmpty()) iPlacementBound += min;
+            times.put(lecture, new ArrayList<TimeLocation>(lectureTimes));
+        }
+
+        for (Constraint<Lecture, Placement> constraint: model.constraints())
+            if (constraint instanceof ItcGroupConstraint)
+                iDistributionBound += distributionWeight * ((ItcGroupConstraint)constraint).getUnavoidablePenalty(assignment, limit);
+
+        Map<Long, List<Lecture>> mandatory = new HashMap<Long, List<Lecture>>();
+        for (Lecture lecture: model.variables()) {
+            if (lecture.getConfiguration() == null || lecture.getConfiguration().getAltConfigurations().size() != 1) continue;
+            if (lecture.sameSubpartLectures() != null && lecture.sameSubpartLectures().size() != 1) continue;
+            List<Lecture> lectures = mandatory.get(lecture.getConfiguration().getOfferingId());
+            if (lectures == null) {
+                lectures = new ArrayList<Lecture>();
+                mandatory.put(lecture.getConfiguration().getOfferingId(), lectures);
+            }
+            lectures.add(lecture);
+        }
+        ItcStudentConflictTable table = ItcStudentConflictTable.getInstance(model);
+        Map<Lecture, Map<Lecture, Boolean>> unavoidable = new HashMap<Lecture, Map<Lecture, Boolean>>();
+        for (Student student: model.getAllStudents()) {
+            List<Lecture> lectures = new ArrayList<Lecture>();
+            for (Long offeringId: student.getOfferings()) {
+                List<Lecture> m = mandatory.get(offeringId);
+                if (m != null) lectures.addAll(m);
+            }
+            for (int i = 0; i < lectures.size(); i++)
+                for (int j = i + 1; j < lectures.size(); j++) {
+                    Lecture l1 = lectures.get(i), l2 = lectures.get(j);
+                    if (l1.getId() > l2.getId()) { Lecture l = l1; l1 = l2; l2 = l; }
+                    Map<Lecture, Boolean> cache = unavoidable.get(l1);
+                    if (cache == null) {
+                        cache = new HashMap<Lecture, Boolean>();
+                        unavoidable.put(l1, cache);
+                    }
+                    Boolean conflict = cache.get(l2);
+                    if (conflict == null) {
+                        conflict = isUnavoidableOverlap(table, times.get(l1), times.get(l2), limit);
+                        cache.put(l2, conflict);
+                    }
+                    if (conflict) iStudentBound += studentWeight;
+                }
+        }
+    }
+
+    private static boolean isUnavoidableOverlap(ItcStudentConflictTable table, List<TimeLocation> t1, List<TimeLocation> t2, long limit) {
+        if (t1 == null || t2 == null || t1.isEmpty() || t2.isEmpty() || (long)t1.size() * t2.size() > limit) return false;
+        for (TimeLocation a: t1)
+            for (TimeLocation b: t2)
+                if (table == null ? !a.hasIntersection(b) : !table.overlaps(a, b)) return false;
+        return true;
+    }
+
+    /** Minimal weighted time and room penalty */
+    public double getPlacementBound() { return iPlacementBound; }
+
+    /** Weighted distribution penalty that cannot be avoided */
+    public double getDistributionBound() { return iDistributionBound; }
+
+    /** Weighted student conflicts that cannot be avoided */
+    public double getStudentBound() { return iStudentBound; }
+
+    /** Lower bound on the total weighted penalty */
+    public double getLowerBound() {
+        return iPlacementBound + iDistributionBound + iStudentBound;
+    }
+
+    @Override
+    public String toString() {
+        return getLowerBound() + " (time & room " + iPlacementBound + ", distribution " + iDistributionBound + ", student " + iStudentBound + ")";
+    }
+}
@@ -1,6 +1,5 @@
 package org.cpsolver.coursett.itc2019;
 
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
@@ -17,24 +16,41 @@ import org.cpsolver.ifs.assignment.Assignment;
  * 
  * @author Tomas Muller
  */
-public class ItcMaxBlockConstraint extends MaxBlockFlexibleConstraint {
+public class ItcMaxBlockConstraint extends MaxBlockFlexibleConstraint implements ItcDistribution {
+	private String iDistributionType = null;
+	private ItcWeekClasses iWeekClasses = null;
 
 	public ItcMaxBlockConstraint(Long id, String owner, String preference, String reference) {
 		super(id, owner, preference, reference);
 	}
+
+	@Override
+	public String getDistributionType() { return iDistributionType; }
+
+	@Override
+	public void setDistributionType(String type) { iDistributionType = type; }
+	
+	/**
+	 * Weeks of {@link #getWeeks()} grouped into equivalence classes, computed on the first use
+	 */
+	protected ItcWeekClasses getWeekClasses() {
+		if (iWeekClasses == null)
+			iWeekClasses = new ItcWeekClasses(variables(), getWeeks());
+		return iWeekClasses;
+	}
 	
 	@Override
     public double getNrViolations(Assignment<Lecture, Placement> assignment, Set<Placement> conflicts, HashMap<Lecture, Placement> assignments) {
-        List<BitSet> weeks = getWeeks();
+        ItcWeekClasses weeks = getWeekClasses();
 
         int penalty = 0;
         for (int dayCode : Constants.DAY_CODES) {
-            for (BitSet week : weeks) {
-                List<Block> blocks = getBlocks(assignment, dayCode, null, null, assignments, week);
+            for (int w = 0; w < weeks.size(); w++) {
+                List<Block> blocks = getBlocks(assignment, dayCode, null, null, assignments, weeks.getWeek(w));
                 for (Block block : blocks) {
                     if (block.getNbrPlacements() == 1 || block.haveSameStartTime()) continue;
                     if (block.getLengthInSlots() > iMaxBlockSlotsBTB) {
-                    	penalty ++;
+                    	penalty += weeks.getMultiplicity(w);
                     }
                 }
             }
@@ -1,6 +1,5 @@
 package org.cpsolver.coursett.itc2019;
 
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
@@ -17,11 +16,28 @@ import org.cpsolver.ifs.assignment.Assignment;
  * 
  * @author Tomas Muller
  */
-public class ItcMaxBreaksConstraint extends MaxBreaksFlexibleConstraint {
+public class ItcMaxBreaksConstraint extends MaxBreaksFlexibleConstraint implements ItcDistribution {
+	private String iDistributionType = null;
+	private ItcWeekClasses iWeekClasses = null;
 
 	public ItcMaxBreaksConstraint(Long id, String owner, String preference, String reference) {
 		super(id, owner, preference, reference);
 	}
+
+	@Override
+	public String getDistributionType() { return iDistributionType; }
+
+	@Override
+	public void setDistributionType(String type) { iDistributionType = type; }
+	
+	/**
+	 * Equivalent weeks of this constraint, see {@link ItcWeekClasses}
+	 */
+	protected ItcWeekClasses getWeekClasses() {
+		if (iWeekClasses == null)
+			iWeekClasses = new ItcWeekClasses(variables(), getWeeks());
+		return iWeekClasses;
+	}
 	
 	@Override
     public double getNrViolations(Assignment<Lecture, Placement> assignment, Set<Placement> conflicts, HashMap<Lecture, Placement> assignments) {
@@ -29,12 +45,14 @@ public class ItcMaxBreaksConstraint extends MaxBreaksFlexibleConstraint {
         // constraint is checked for every day in week
         for (int dayCode : Constants.DAY_CODES) {
             // constraint is checked for every week in semester (or for the whole semester)
-            for (BitSet week : getWeeks()) {
+            // equivalent weeks are only checked once
+            ItcWeekClasses weeks = getWeekClasses();
+            for (int w = 0; w < weeks.size(); w++) {
                 // each blocks contains placements which are BTB
-                List<Block> blocks = getBlocks(assignment, dayCode, null, null, assignments, week);
+                List<Block> blocks = getBlocks(assignment, dayCode, null, null, assignments, weeks.getWeek(w));
                 // too many blocks -> increase penalty
                 if (blocks.size() > iMaxBlocksOnADay)
-                	penalty += (blocks.size() - iMaxBlocksOnADay);
+                	penalty += weeks.getMultiplicity(w) * (blocks.size() - iMaxBlocksOnADay);
             }
         }
         return penalty;
@@ -16,11 +16,18 @@ import org.cpsolver.ifs.assignment.Assignment;
  * 
  * @author Tomas Muller
  */
-public class ItcMaxDaysConstraint extends MaxDaysFlexibleConstraint{
+public class ItcMaxDaysConstraint extends MaxDaysFlexibleConstraint implements ItcDistribution {
+	private String iDistributionType = null;
 
 	public ItcMaxDaysConstraint(Long id, String owner, String preference, String reference) {
 		super(id, owner, preference, reference);
 	}
+
+	@Override
+	public String getDistributionType() { return iDistributionType; }
+
+	@Override
+	public void setDistributionType(String type) { iDistributionType = type; }
 	
 	@Override
 	public double getCurrentPreference(Assignment<Lecture, Placement> assignment, Set<Placement> conflicts, HashMap<Lecture, Placement> assignments){
@@ -0,0 +1,290 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cpsolver.coursett.constraint.FlexibleConstraint;
+import org.cpsolver.coursett.constraint.JenrlConstraint;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.TimetableModel;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.extension.Extension;
+import org.cpsolver.ifs.model.Constraint;
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.model.ModelListener;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+
+/**
+ * Index of penalized classes. For each class, its current (weighted) contributions to the ITC 2019 penalty are kept
+ * by category: time and room penalty of its placement, its share of the penalties of the soft distribution constraints
+ * it is in (taken from the {@link ItcGroupConstraint.ItcGroupConstraintContext} or the flexible constraint context),
+ * and the student conflicts with other classes. The index is updated incrementally as classes are assigned and
+ * unassigned: the last penalty of each joint enrollment and distribution constraint is kept, and only when it changes
+ * the difference is added to the classes of the constraint (so an update is linear in the number of constraints of the class).
+ * Changes of the student enrollments are passed in by {@link ItcEnrollments} (see {@link #enrollmentsChanged(Assignment, Collection)}).
+ * It allows for selecting a class with probability proportional to its penalty in O(log n) time.
+ * <br>
+ * The index is built on the first call of {@link #select(Assignment)} and it follows that assignment only
+ * (changes in other assignments, e.g., of other solver threads, are ignored).
+ *
+ */
+public class ItcPenalizedLectures extends Extension<Lecture, Placement> {
+    private Assignment<Lecture, Placement> iAssignment = null;
+    private List<Lecture> iLectures;
+    private Map<Lecture, Integer> iIndex;
+    private Map<Constraint<Lecture, Placement>, Double> iConstraintPenalty;
+    private Map<JenrlConstraint, Double> iJenrlPenalty;
+    private double[] iTimePenalty, iRoomPenalty, iDistributionPenalty, iStudentPenalty;
+    private double[] iWeight, iTree;
+    private int iTimeWeight, iRoomWeight, iDistributionWeight, iStudentWeight;
+    private int iUpdates = 0;
+    private ItcStudentConflictTable iTable = null;
+
+    public ItcPenalizedLectures(Solver<Lecture, Placement> solver, DataProperties properties) {
+        super(solver, properties);
+    }
+
+    /** Find the index among the extensions of the given solver, null if not registered */
+    public static ItcPenalizedLectures getInstance(Solver<Lecture, Placement> solver) {
+        for (Extension<Lecture, Placement> extension: solver.getExtensions())
+            if (extension instanceof ItcPenalizedLectures) return (ItcPenalizedLectures)extension;
+        return null;
+    }
+
+    /** Find the index among the listeners of the given model, null if not registered */
+    public static ItcPenalizedLectures getInstance(Model<Lecture, Placement> model) {
+        for (ModelListener<Lecture, Placement> listener: model.getModelListeners())
+            if (listener instanceof ItcPenalizedLectures) return (ItcPenalizedLectures)listener;
+        return null;
+    }
+
+    protected synchronized void build(Assignment<Lecture, Placement> assignment) {
+        TimetableModel model = (TimetableModel)getModel();
+        iTimeWeight = model.getProperties().getPropertyInt("ITC2019.TimeWeight", 2);
+        iRoomWeight = model.getProperties().getPropertyInt("ITC2019.RoomWeight", 1);
+        iDistributionWeight = model.getProperties().getPropertyInt("ITC2019.DistributionWeight", 10);
+        iStudentWeight = model.getProperties().getPropertyInt("ITC2019.StudentWeight", 5);
+        iTable = ItcStudentConflictTable.getInstance(model);
+        iLectures = model.variables();
+        iIndex = new HashMap<Lecture, Integer>();
+        for (int i = 0; i < iLectures.size(); i++)
+            iIndex.put(iLectures.get(i), i);
+        iTimePenalty = new double[iLectures.size()];
+        iRoomPenalty = new double[iLectures.size()];
+        for (int i = 0; i < iLectures.size(); i++) {
+            Placement placement = assignment.getValue(iLectures.get(i));
+            iTimePenalty[i] = getTimePenalty(placement);
+            iRoomPenalty[i] = getRoomPenalty(placement);
+        }
+        iConstraintPenalty = new HashMap<Constraint<Lecture, Placement>, Double>();
+        for (Constraint<Lecture, Placement> constraint: model.constraints())
+            if (isDistribution(constraint))
+                iConstraintPenalty.put(constraint, computePenalty(assignment, constraint));
+        iJenrlPenalty = new HashMap<JenrlConstraint, Double>();
+        for (JenrlConstraint jenrl: model.getJenrlConstraints())
+            iJenrlPenalty.put(jenrl, computePenalty(assignment, jenrl));
+        rebuild();
+        iAssignment = assignment;
+    }
+
+    /**
+     * Recompute the distribution and student contributions from the kept constraint penalties, the class weights,
+     * and the tree (this clears the rounding errors accumulated by the incremental updates)
+     */
+    private void rebuild() {
+        iDistributionPenalty = new double[iLectures.size()];
+        for (Map.Entry<Constraint<Lecture, Placement>, Double> entry: iConstraintPenalty.entrySet()) {
+            if (entry.getValue() == 0.0) continue;
+            double share = iDistributionWeight * entry.getValue() / entry.getKey().variables().size();
+            for (Lecture lecture: entry.getKey().variables())
+                iDistributionPenalty[iIndex.get(lecture)] += share;
+        }
+        iStudentPenalty = new double[iLectures.size()];
+        for (Map.Entry<JenrlConstraint, Double> entry: iJenrlPenalty.entrySet()) {
+            if (entry.getValue() == 0.0) continue;
+            iStudentPenalty[iIndex.get(entry.getKey().first())] += entry.getValue();
+            iStudentPenalty[iIndex.get(entry.getKey().second())] += entry.getValue();
+        }
+        iWeight = new double[iLectures.size()];
+        for (int i = 0; i < iWeight.length; i++)
+            iWeight[i] = iTimePenalty[i] + iRoomPenalty[i] + iDistributionPenalty[i] + iStudentPenalty[i];
+        iTree = new double[iWeight.length + 1];
+        for (int i = 0; i < iWeight.length; i++) {
+            int j = i + 1;
+            iTree[j] += iWeight[i];
+            int parent = j + (j & -j);
+            if (parent < iTree.length) iTree[parent] += iTree[j];
+        }
+        iUpdates = 0;
+    }
+
+    private static boolean isDistribution(Constraint<Lecture, Placement> constraint) {
+        return !constraint.isHard() && (constraint instanceof ItcGroupConstraint || constraint instanceof FlexibleConstraint);
+    }
+
+    private static double computePenalty(Assignment<Lecture, Placement> assignment, Constraint<Lecture, Placement> constraint) {
+        if (constraint instanceof ItcGroupConstraint)
+            return ((ItcGroupConstraint.ItcGroupConstraintContext)((ItcGroupConstraint)constraint).getContext(assignment)).getLastPreference();
+        if (constraint instanceof FlexibleConstraint)
+            return ((FlexibleConstraint)constraint).getContext(assignment).getPreference();
+        return 0.0;
+    }
+
+    private double getTimePenalty(Placement placement) {
+        return (placement == null ? 0.0 : iTimeWeight * placement.getTimeLocation().getPreference());
+    }
+
+    private double getRoomPenalty(Placement placement) {
+        return (placement == null || placement.getRoomLocation() == null ? 0.0 : iRoomWeight * placement.getRoomLocation().getPreference());
+    }
+
+    private double computePenalty(Assignment<Lecture, Placement> assignment, JenrlConstraint jenrl) {
+        if (iTable == null ? jenrl.isInConflict(assignment) : iTable.inConflict(assignment, jenrl))
+            return iStudentWeight * jenrl.getJenrl();
+        return 0.0;
+    }
+
+    private void add(int index, double[] category, double delta) {
+        category[index] += delta;
+        iWeight[index] += delta;
+        for (int j = index + 1; j < iTree.length; j += (j & -j))
+            iTree[j] += delta;
+        iUpdates ++;
+    }
+
+    private void update(Assignment<Lecture, Placement> assignment, JenrlConstraint jenrl) {
+        double penalty = computePenalty(assignment, jenrl);
+        Double last = iJenrlPenalty.put(jenrl, penalty);
+        double delta = penalty - (last == null ? 0.0 : last);
+        if (delta != 0.0) {
+            add(iIndex.get(jenrl.first()), iStudentPenalty, delta);
+            add(iIndex.get(jenrl.second()), iStudentPenalty, delta);
+        }
+    }
+
+    protected synchronized void update(Assignment<Lecture, Placement> assignment, Lecture lecture) {
+        if (iAssignment == null || iAssignment != assignment) return;
+        Integer index = iIndex.get(lecture);
+        if (index == null) return;
+        Placement placement = assignment.getValue(lecture);
+        double time = getTimePenalty(placement), room = getRoomPenalty(placement);
+        if (time != iTimePenalty[index]) {
+            add(index, iTimePenalty, time - iTimePenalty[index]);
+            iTimePenalty[index] = time;
+        }
+        if (room != iRoomPenalty[index]) {
+            add(index, iRoomPenalty, room - iRoomPenalty[index]);
+            iRoomPenalty[index] = room;
+        }
+        for (Constraint<Lecture, Placement> constraint: lecture.constraints()) {
+            if (constraint instanceof JenrlConstraint) {
+                update(assignment, (JenrlConstraint)constraint);
+            } else if (iConstraintPenalty.containsKey(constraint)) {
+                double penalty = computePenalty(assignment, constraint);
+                double last = iConstraintPenalty.get(constraint);
+                if (penalty != last) {
+                    iConstraintPenalty.put(constraint, penalty);
+                    double delta = iDistributionWeight * (penalty - last) / constraint.variables().size();
+                    for (Lecture l: constraint.variables())
+                        add(iIndex.get(l), iDistributionPenalty, delta);
+                }
+            }
+        }
+        // limit accumulation of rounding errors
+        if (iUpdates > 100000) rebuild();
+    }
+
+    /**
+     * Student enrollments of the given classes have changed (the joint enrollment constraints of the classes are updated)
+     */
+    public synchronized void enrollmentsChanged(Assignment<Lecture, Placement> assignment, Collection<Lecture> lectures) {
+        if (iAssignment == null || iAssignment != assignment) return;
+        for (Lecture lecture: lectures)
+            for (JenrlConstraint jenrl: lecture.jenrlConstraints())
+                update(assignment, jenrl);
+        if (iUpdates > 100000) rebuild();
+    }
+
+    @Override
+    public void afterAssigned(Assignment<Lecture, Placement> assignment, long iteration, Placement value) {
+        update(assignment, value.variable());
+    }
+
+    @Override
+    public void afterUnassigned(Assignment<Lecture, Placement> assignment, long iteration, Placement value) {
+        update(assignment, value.variable());
+    }
+
+    /** Total penalty of all the classes */
+    public synchronized double getTotalPenalty() {
+        double total = 0.0;
+        for (int j = iTree.length - 1; j > 0; j -= (j & -j))
+            total += iTree[j];
+        return total;
+    }
+
+    /** Current penalty of the given class, 0 if the index is not built yet */
+    public synchronized double getPenalty(Lecture lecture) {
+        Integer index = (iIndex == null ? null : iIndex.get(lecture));
+        return (index == null ? 0.0 : iWeight[index]);
+    }
+
+    /** Weighted time penalty of the given class, 0 if the index is not built yet */
+    public synchronized double getTimePenalty(Lecture lecture) {
+        Integer index = (iIndex == null ? null : iIndex.get(lecture));
+        return (index == null ? 0.0 : iTimePenalty[index]);
+    }
+
+    /** Weighted room penalty of the given class, 0 if the index is not built yet */
+    public synchronized double getRoomPenalty(Lecture lecture) {
+        Integer index = (iIndex == null ? null : iIndex.get(lecture));
+        return (index == null ? 0.0 : iRoomPenalty[index]);
+    }
+
+    /** Weighted share of the distribution penalties of the given class, 0 if the index is not built yet */
+    public synchronized double getDistributionPenalty(Lecture lecture) {
+        Integer index = (iIndex == null ? null : iIndex.get(lecture));
+        return (index == null ? 0.0 : iDistributionPenalty[index]);
+    }
+
+    /** Weighted student conflicts of the given class, 0 if the index is not built yet */
+    public synchronized double getStudentPenalty(Lecture lecture) {
+        Integer index = (iIndex == null ? null : iIndex.get(lecture));
+        return (index == null ? 0.0 : iStudentPenalty[index]);
+    }
+
+    /** Position of the given class in the model variables, -1 if not known */
+    public synchronized int getIndex(Lecture lecture) {
+        Integer index = (iIndex == null ? null : iIndex.get(lecture));
+        return (index == null ? -1 : index);
+    }
+
+    /**
+     * Select a class with the probability proportional to its penalty
+     * @return null if there is no penalized class (or when the index follows a different assignment)
+     */
+    public synchronized Lecture select(Assignment<Lecture, Placement> assignment) {
+        if (iAssignment == null) build(assignment);
+        else if (iAssignment != assignment) return null;
+        double total = getTotalPenalty();
+        if (total <= 0.0) return null;
+        double r = ToolBox.random() * total;
+        int pos = 0;
+        for (int step = Integer.highestOneBit(iTree.length); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next < iTree.length && iTree[next] <= r) {
+                pos = next;
+                r -= iTree[next];
+            }
+        }
+        // pos is the number of classes with the prefix sum not exceeding r
+        for (int i = Math.min(pos, iWeight.length - 1); i < iWeight.length; i++)
+            if (iWeight[i] > 0.0) return iLectures.get(i);
+        return null;
+    }
+}
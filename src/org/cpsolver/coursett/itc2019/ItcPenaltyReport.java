@@ -0,0 +1,219 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.cpsolver.coursett.constraint.FlexibleConstraint;
+import org.cpsolver.coursett.constraint.GroupConstraint;
+import org.cpsolver.coursett.constraint.JenrlConstraint;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.TimetableModel;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.model.Constraint;
+import org.cpsolver.ifs.util.DataProperties;
+
+/**
+ * ITC 2019 penalty breakdown of a solution: total time, room, distribution and student penalties
+ * together with the penalties of the individual distribution constraints and of the distribution types.
+ * Distribution and student penalties are computed in parallel over the constraints.
+ *
+ */
+public class ItcPenaltyReport {
+    private int iTimePenalty = 0, iRoomPenalty = 0, iStudentPenalty = 0;
+    private double iDistributionPenalty = 0;
+    private int iTimeWeight, iRoomWeight, iDistributionWeight, iStudentWeight;
+    private List<ConstraintPenalty> iConstraints;
+    private Map<String, TypePenalty> iTypes = new TreeMap<String, TypePenalty>();
+
+    public ItcPenaltyReport(TimetableModel model, Assignment<Lecture, Placement> assignment) {
+        DataProperties properties = model.getProperties();
+        iTimeWeight = properties.getPropertyInt("ITC2019.TimeWeight", 2);
+        iRoomWeight = properties.getPropertyInt("ITC2019.RoomWeight", 1);
+        iDistributionWeight = properties.getPropertyInt("ITC2019.DistributionWeight", 10);
+        iStudentWeight = properties.getPropertyInt("ITC2019.StudentWeight", 5);
+
+        for (Lecture lecture: model.variables()) {
+            Placement placement = assignment.getValue(lecture);
+            if (placement == null) continue;
+            iTimePenalty += placement.getTimeLocation().getPreference();
+            if (placement.getRoomLocation() != null)
+                iRoomPenalty += placement.getRoomLocation().getPreference();
+        }
+
+        iConstraints = model.constraints().parallelStream()
+                .filter(c -> !c.isHard() && (c instanceof GroupConstraint || c instanceof FlexibleConstraint))
+                .map(c -> new ConstraintPenalty(c, assignment))
+                .collect(Collectors.toList());
+        for (ConstraintPenalty cp: iConstraints) {
+            iDistributionPenalty += cp.getPenalty();
+            TypePenalty tp = iTypes.get(cp.getType());
+            if (tp == null) {
+                tp = new TypePenalty(cp.getType());
+                iTypes.put(cp.getType(), tp);
+            }
+            tp.add(cp);
+        }
+
+        ItcStudentConflictTable table = ItcStudentConflictTable.getInstance(model);
+        iStudentPenalty = model.constraints().parallelStream()
+                .filter(c -> c instanceof JenrlConstraint)
+                .mapToInt(c -> (table == null ? ((JenrlConstraint)c).isInConflict(assignment) : table.inConflict(assignment, (JenrlConstraint)c)) ? (int)Math.round(((JenrlConstraint)c).getJenrl()) : 0)
+                .sum();
+    }
+
+    /** Time penalty (not weighted) */
+    public int getTimePenalty() { return iTimePenalty; }
+    /** Room penalty (not weighted) */
+    public int getRoomPenalty() { return iRoomPenalty; }
+    /** Distribution penalty (not weighted) */
+    public double getDistributionPenalty() { return iDistributionPenalty; }
+    /** Student conflicts (not weighted) */
+    public int getStudentPenalty() { return iStudentPenalty; }
+
+    /** Total weighted penalty */
+    public double getTotalPenalty() {
+        return iTimeWeight * iTimePenalty + iRoomWeight * iRoomPenalty + iDistributionWeight * iDistributionPenalty + iStudentWeight * iStudentPenalty;
+    }
+
+    /** Penalties of the soft distribution constraints */
+    public List<ConstraintPenalty> getConstraints() { return iConstraints; }
+
+    /** Penalties by the distribution type */
+    public Map<String, TypePenalty> getTypes() { return iTypes; }
+
+    /**
+     * Save the report in the JSON format, constraints are ordered by decreasing penalty and the ones with no penalty are skipped
+     */
+    public void save(File file) throws IOException {
+        PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            pw.println("{");
+            pw.println("  \"total\": " + number(getTotalPenalty()) + ",");
+            pw.println("  \"penalties\": {");
+            pw.println("    \"time\": " + category(iTimePenalty, iTimeWeight) + ",");
+            pw.println("    \"room\": " + category(iRoomPenalty, iRoomWeight) + ",");
+            pw.println("    \"distribution\": " + category(iDistributionPenalty, iDistributionWeight) + ",");
+            pw.println("    \"student\": " + category(iStudentPenalty, iStudentWeight));
+            pw.println("  },");
+            pw.println("  \"types\": [");
+            for (Iterator<TypePenalty> i = iTypes.values().iterator(); i.hasNext(); ) {
+                TypePenalty tp = i.next();
+                pw.println("    {\"type\": \"" + tp.getType() + "\", \"constraints\": " + tp.getNrConstraints() + ", \"violated\": " + tp.getNrViolated() +
+                        ", \"penalty\": " + number(tp.getPenalty()) + ", \"weighted\": " + number(iDistributionWeight * tp.getPenalty()) + "}" + (i.hasNext() ? "," : ""));
+            }
+            pw.println("  ],");
+            List<ConstraintPenalty> violated = new ArrayList<ConstraintPenalty>();
+            for (ConstraintPenalty cp: iConstraints)
+                if (cp.getPenalty() != 0 || cp.getViolations() != 0) violated.add(cp);
+            Collections.sort(violated, new Comparator<ConstraintPenalty>() {
+                @Override
+                public int compare(ConstraintPenalty cp1, ConstraintPenalty cp2) {
+                    int cmp = Double.compare(cp2.getPenalty(), cp1.getPenalty());
+                    if (cmp != 0) return cmp;
+                    return Long.compare(cp1.getConstraint().getId(), cp2.getConstraint().getId());
+                }
+            });
+            pw.println("  \"constraints\": [");
+            for (Iterator<ConstraintPenalty> i = violated.iterator(); i.hasNext(); ) {
+                ConstraintPenalty cp = i.next();
+                StringBuffer classes = new StringBuffer();
+                for (Lecture lecture: cp.getConstraint().variables()) {
+                    if (classes.length() > 0) classes.append(", ");
+                    classes.append(lecture.getClassId());
+                }
+                pw.println("    {\"id\": " + cp.getConstraint().getId() + ", \"type\": \"" + cp.getType() + "\", \"classes\": [" + classes + "]" +
+                        ", \"violations\": " + number(cp.getViolations()) + ", \"penalty\": " + number(cp.getPenalty()) +
+                        ", \"weighted\": " + number(iDistributionWeight * cp.getPenalty()) + "}" + (i.hasNext() ? "," : ""));
+            }
+            pw.println("  ]");
+            pw.println("}");
+            pw.flush();
+        } finally {
+            pw.close();
+        }
+    }
+
+    private static String category(double penalty, int weight) {
+        return "{\"penalty\": " + number(penalty) + ", \"weight\": " + weight + ", \"weighted\": " + number(weight * penalty) + "}";
+    }
+
+    private static String number(double value) {
+        if (value == Math.rint(value)) return String.valueOf((long)value);
+        return String.valueOf(value);
+    }
+
+    /**
+     * Distribution type of the given constraint, as defined in the ITC 2019 problem (when available)
+     */
+    public static String getType(Constraint<Lecture, Placement> constraint) {
+        if (constraint instanceof ItcDistribution && ((ItcDistribution)constraint).getDistributionType() != null)
+            return ((ItcDistribution)constraint).getDistributionType();
+        if (constraint instanceof GroupConstraint)
+            return ((GroupConstraint)constraint).getType().reference();
+        if (constraint instanceof FlexibleConstraint)
+            return ((FlexibleConstraint)constraint).getReference();
+        return constraint.getClass().getSimpleName();
+    }
+
+    /**
+     * Penalty of a soft distribution constraint
+     */
+    public static class ConstraintPenalty {
+        private Constraint<Lecture, Placement> iConstraint;
+        private String iType;
+        private double iPenalty, iViolations;
+
+        public ConstraintPenalty(Constraint<Lecture, Placement> constraint, Assignment<Lecture, Placement> assignment) {
+            iConstraint = constraint;
+            iType = getType(constraint);
+            if (constraint instanceof GroupConstraint) {
+                iPenalty = ((GroupConstraint)constraint).getCurrentPreference(assignment);
+                iViolations = (iPenalty == 0 ? 0 : 1);
+            } else if (constraint instanceof FlexibleConstraint) {
+                FlexibleConstraint fc = (FlexibleConstraint)constraint;
+                iPenalty = fc.getCurrentPreference(assignment, null, null);
+                iViolations = fc.getNrViolations(assignment, null, null);
+            }
+        }
+
+        public Constraint<Lecture, Placement> getConstraint() { return iConstraint; }
+        public String getType() { return iType; }
+        public double getPenalty() { return iPenalty; }
+        public double getViolations() { return iViolations; }
+    }
+
+    /**
+     * Penalty of a distribution type
+     */
+    public static class TypePenalty {
+        private String iType;
+        private int iNrConstraints = 0, iNrViolated = 0;
+        private double iPenalty = 0;
+
+        public TypePenalty(String type) { iType = type; }
+
+        protected void add(ConstraintPenalty cp) {
+            iNrConstraints ++;
+            if (cp.getPenalty() != 0) iNrViolated ++;
+            iPenalty += cp.getPenalty();
+        }
+
+        public String getType() { return iType; }
+        public int getNrConstraints() { return iNrConstraints; }
+        public int getNrViolated() { return iNrViolated; }
+        public double getPenalty() { return iPenalty; }
+    }
+}
@@ -0,0 +1,137 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+
+/**
+ * Lazily enumerated domain of a class. Instead of keeping a {@link Placement} for each
+ * valid combination of a time and a room, only the (time index, room index) pairs are kept
+ * (encoded as a sorted array of integers, or not at all when all the combinations are valid)
+ * and the placements are created on demand.
+ * Only classes that need at most one room are supported (which is always the case for ITC 2019).
+ *
+ */
+public class ItcPlacementDomain extends AbstractList<Placement> {
+    private Lecture iLecture;
+    private List<TimeLocation> iTimes;
+    private List<RoomLocation> iRooms;
+    private int iWidth;
+    private int[] iPairs = null;
+    private int iSize;
+
+    public ItcPlacementDomain(Lecture lecture) {
+        iLecture = lecture;
+        iTimes = lecture.timeLocations();
+        iRooms = lecture.roomLocations();
+        iWidth = (lecture.getNrRooms() == 0 ? 1 : iRooms.size());
+        int[] pairs = new int[iTimes.size() * iWidth];
+        int size = 0;
+        for (int t = 0; t < iTimes.size(); t++)
+            for (int r = 0; r < iWidth; r++)
+                if (createPlacement(t, r).isValid())
+                    pairs[size++] = t * iWidth + r;
+        iSize = size;
+        if (size < pairs.length)
+            iPairs = Arrays.copyOf(pairs, size);
+    }
+
+    /**
+     * Lazy domain can be used for a class that needs at most one room and that is not committed
+     */
+    public static boolean isApplicable(Lecture lecture) {
+        return lecture.getNrRooms() <= 1 && !lecture.isCommitted();
+    }
+
+    /** Class of this domain */
+    public Lecture getLecture() { return iLecture; }
+
+    /** Number of times, the time indexes go from 0 to this number (excluded) */
+    public int getNrTimes() { return iTimes.size(); }
+
+    /** Number of rooms, the room indexes go from 0 to this number (excluded); 0 when the class does not need a room */
+    public int getNrRooms() { return iLecture.getNrRooms() == 0 ? 0 : iRooms.size(); }
+
+    /** Time of the given time index */
+    public TimeLocation getTime(int timeIndex) { return iTimes.get(timeIndex); }
+
+    /** Room of the given room index, null when the class does not need a room */
+    public RoomLocation getRoom(int roomIndex) { return iLecture.getNrRooms() == 0 ? null : iRooms.get(roomIndex); }
+
+    private int code(int index) {
+        return (iPairs == null ? index : iPairs[index]);
+    }
+
+    /** Time index of the value with the given index */
+    public int getTimeIndex(int index) {
+        return code(index) / iWidth;
+    }
+
+    /** Room index of the value with the given index, -1 when the class does not need a room */
+    public int getRoomIndex(int index) {
+        return (iLecture.getNrRooms() == 0 ? -1 : code(index) % iWidth);
+    }
+
+    /**
+     * Index of the value with the given time and room index
+     * @return -1 if the combination is not in the domain
+     */
+    public int indexOf(int timeIndex, int roomIndex) {
+        if (timeIndex < 0 || timeIndex >= iTimes.size()) return -1;
+        if (iLecture.getNrRooms() == 0) roomIndex = 0;
+        else if (roomIndex < 0 || roomIndex >= iWidth) return -1;
+        int code = timeIndex * iWidth + roomIndex;
+        if (iPairs == null) return code;
+        int index = Arrays.binarySearch(iPairs, code);
+        return (index < 0 ? -1 : index);
+    }
+
+    /** True if the given combination of time and room index is in the domain */
+    public boolean contains(int timeIndex, int roomIndex) {
+        return indexOf(timeIndex, roomIndex) >= 0;
+    }
+
+    /** Create placement for the given time and room index, the combination is not checked against the domain */
+    public Placement createPlacement(int timeIndex, int roomIndex) {
+        return new Placement(iLecture, iTimes.get(timeIndex), iLecture.getNrRooms() == 0 ? null : iRooms.get(roomIndex));
+    }
+
+    @Override
+    public Placement get(int index) {
+        if (index < 0 || index >= iSize)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + iSize);
+        int code = code(index);
+        return createPlacement(code / iWidth, code % iWidth);
+    }
+
+    @Override
+    public int size() {
+        return iSize;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (o == null || !(o instanceof Placement)) return -1;
+        Placement placement = (Placement)o;
+        if (!iLecture.equals(placement.variable()) || placement.isMultiRoom()) return -1;
+        int timeIndex = iTimes.indexOf(placement.getTimeLocation());
+        if (timeIndex < 0) return -1;
+        int roomIndex = (iLecture.getNrRooms() == 0 ? 0 : iRooms.indexOf(placement.getRoomLocation()));
+        return indexOf(timeIndex, roomIndex);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+}
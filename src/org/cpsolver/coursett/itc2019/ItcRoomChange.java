@@ -0,0 +1,31 @@
+package org.cpsolver.coursett.itc2019;
+
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.ifs.util.DataProperties;
+
+/**
+ * ITC 2019 version of the {@link org.cpsolver.coursett.neighbourhoods.RoomChange} neighbourhood:
+ * a randomly selected class is moved to a different room, keeping its time.
+ *
+ */
+public class ItcRoomChange extends ItcChangeMove {
+
+    public ItcRoomChange(DataProperties config) {
+        super(config);
+    }
+
+    @Override
+    protected int getNrCandidates(Lecture lecture) {
+        return (lecture.getNrRooms() == 0 ? 0 : lecture.roomLocations().size());
+    }
+
+    @Override
+    protected int getTimeIndex(int timeIndex, int candidate) {
+        return timeIndex;
+    }
+
+    @Override
+    protected int getRoomIndex(int roomIndex, int candidate) {
+        return candidate;
+    }
+}
@@ -0,0 +1,182 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cpsolver.coursett.constraint.RoomConstraint;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.ifs.algorithms.HillClimber.HillClimberSelection;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.heuristics.NeighbourSelection;
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.model.Neighbour;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+
+/**
+ * Room reassignment neighbourhood. A randomly selected class is taken together with up to ItcRoomMatching.MaxClasses
+ * other classes that are placed in one of its rooms and whose times all overlap with each other (so no two of them
+ * can share a room). The rooms of these classes are then reassigned (keeping their times) by a minimal cost bipartite
+ * matching, where the cost of a class and a room is the value of the placement given the current assignment
+ * of the other classes (room penalty, distribution constraints like SameRoom and DifferentRoom, etc.) and rooms that
+ * are not available or that are in a hard conflict with some other class are excluded. The classes of the set are
+ * tentatively unassigned while the costs are computed (so that the rooms they are leaving are seen as free), the matching
+ * is then assigned to compute the value of the move, and the original placements are restored. The whole reassignment
+ * is returned as one {@link ItcCompoundNeighbour}.
+ *
+ */
+public class ItcRoomMatching implements NeighbourSelection<Lecture, Placement>, HillClimberSelection {
+    private static final double INF = 1e12;
+    private int iMaxClasses = 10;
+    private boolean iHC = false;
+
+    public ItcRoomMatching(DataProperties config) {
+        iMaxClasses = config.getPropertyInt("ItcRoomMatching.MaxClasses", iMaxClasses);
+    }
+
+    @Override
+    public void init(Solver<Lecture, Placement> solver) {
+    }
+
+    @Override
+    public void setHcMode(boolean hcMode) {
+        iHC = hcMode;
+    }
+
+    @Override
+    public Neighbour<Lecture, Placement> selectNeighbour(Solution<Lecture, Placement> solution) {
+        Model<Lecture, Placement> model = solution.getModel();
+        Assignment<Lecture, Placement> assignment = solution.getAssignment();
+        Lecture seed = ToolBox.random(model.variables());
+        Placement placement = assignment.getValue(seed);
+        if (placement == null || seed.getNrRooms() != 1 || placement.getRoomLocation() == null || seed.roomLocations().size() <= 1) return null;
+
+        // classes placed in the rooms of the seed, with times overlapping with each other
+        List<Lecture> classes = new ArrayList<Lecture>();
+        List<Placement> placements = new ArrayList<Placement>();
+        classes.add(seed); placements.add(placement);
+        List<RoomLocation> seedRooms = seed.roomLocations();
+        int roomIdx = ToolBox.random(seedRooms.size());
+        rooms: for (int r = 0; r < seedRooms.size(); r++) {
+            RoomLocation room = seedRooms.get((r + roomIdx) % seedRooms.size());
+            RoomConstraint rc = room.getRoomConstraint();
+            if (rc == null) continue;
+            for (Lecture other: rc.variables()) {
+                if (classes.contains(other) || other.getNrRooms() != 1) continue;
+                Placement p = assignment.getValue(other);
+                if (p == null || p.getRoomLocation() == null || !p.getRoomLocation().getId().equals(room.getId())) continue;
+                boolean overlaps = true;
+                for (Placement q: placements)
+                    if (!q.getTimeLocation().hasIntersection(p.getTimeLocation())) { overlaps = false; break; }
+                if (!overlaps) continue;
+                classes.add(other); placements.add(p);
+                if (classes.size() >= iMaxClasses) break rooms;
+            }
+        }
+        if (classes.size() <= 1) return null;
+
+        // candidate rooms
+        List<Long> roomIds = new ArrayList<Long>();
+        Map<Long, Integer> roomIndex = new HashMap<Long, Integer>();
+        for (Lecture lecture: classes)
+            for (RoomLocation room: lecture.roomLocations())
+                if (!roomIndex.containsKey(room.getId())) {
+                    roomIndex.put(room.getId(), roomIds.size());
+                    roomIds.add(room.getId());
+                }
+
+        // costs, computed with all the classes of the set unassigned
+        Placement[][] candidates = new Placement[classes.size()][roomIds.size()];
+        double[][] cost = new double[classes.size()][roomIds.size()];
+        for (double[] row: cost) Arrays.fill(row, INF);
+        ItcCompoundNeighbour.Tentative tentative = new ItcCompoundNeighbour.Tentative(model, assignment, classes, solution.getIteration());
+        try {
+            for (int i = 0; i < classes.size(); i++) {
+                Lecture lecture = classes.get(i);
+                Placement current = placements.get(i);
+                for (RoomLocation room: lecture.roomLocations()) {
+                    int j = roomIndex.get(room.getId());
+                    Placement p = (room.getId().equals(current.getRoomLocation().getId()) ? current : new Placement(lecture, current.getTimeLocation(), room));
+                    if (p != current) {
+                        if (!p.isValid()) continue;
+                        Set<Placement> conflicts = model.conflictValues(assignment, p);
+                        if (!conflicts.isEmpty()) continue;
+                    }
+                    candidates[i][j] = p;
+                    cost[i][j] = p.toDouble(assignment);
+                }
+            }
+
+            int[] match = minCostMatching(cost);
+            Map<Lecture, Placement> changes = new HashMap<Lecture, Placement>();
+            for (int i = 0; i < classes.size(); i++) {
+                if (match[i] < 0 || candidates[i][match[i]] == null) return null;
+                Placement p = candidates[i][match[i]];
+                if (p != placements.get(i)) changes.put(classes.get(i), p);
+            }
+            if (changes.isEmpty()) return null;
+
+            // value of the move, with all the classes of the set placed as matched
+            for (int i = 0; i < classes.size(); i++)
+                if (!tentative.assign(candidates[i][match[i]])) return null;
+            double value = tentative.getValue();
+            if (iHC && value > 0) return null;
+            return new ItcCompoundNeighbour(changes, value);
+        } finally {
+            tentative.restore();
+        }
+    }
+
+    /**
+     * Minimal cost assignment of rows to columns (Hungarian method), there must be at most as many rows as there are columns.
+     * @return column of each row
+     */
+    public static int[] minCostMatching(double[][] cost) {
+        int n = cost.length;
+        int m = (n == 0 ? 0 : cost[0].length);
+        int[] ret = new int[n];
+        Arrays.fill(ret, -1);
+        if (n == 0 || n > m) return ret;
+        double[] u = new double[n + 1], v = new double[m + 1];
+        int[] p = new int[m + 1], way = new int[m + 1];
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            double[] minv = new double[m + 1];
+            Arrays.fill(minv, Double.MAX_VALUE);
+            boolean[] used = new boolean[m + 1];
+            do {
+                used[j0] = true;
+                int i0 = p[j0], j1 = 0;
+                double delta = Double.MAX_VALUE;
+                for (int j = 1; j <= m; j++) {
+                    if (used[j]) continue;
+                    double cur = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                    if (cur < minv[j]) { minv[j] = cur; way[j] = j0; }
+                    if (minv[j] < delta) { delta = minv[j]; j1 = j; }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) { u[p[j]] += delta; v[j] -= delta; }
+                    else minv[j] -= delta;
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+        for (int j = 1; j <= m; j++)
+            if (p[j] != 0) ret[p[j] - 1] = j - 1;
+        return ret;
+    }
+}
@@ -0,0 +1,205 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cpsolver.coursett.constraint.FlexibleConstraint;
+import org.cpsolver.coursett.constraint.GroupConstraint;
+import org.cpsolver.coursett.constraint.RoomConstraint;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.Student;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.ifs.algorithms.HillClimber.HillClimberSelection;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.heuristics.NeighbourSelection;
+import org.cpsolver.ifs.model.Constraint;
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.model.Neighbour;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+
+/**
+ * Ruin and recreate (large neighbourhood search) move. A seed class is selected (a penalized one when
+ * the {@link ItcPenalizedLectures} extension is registered) and a structured subset of classes around it
+ * is ruined: all classes of its course, the classes placed in its room on the same days, the classes of one of its students,
+ * or the classes of one of its distribution constraints. At most ItcRuin.MaxClasses classes are ruined.
+ * The classes are then unassigned and greedily placed back, the ones with the fewest placements first,
+ * each into the best of up to ItcRuin.Samples sampled placements (and the current one) that is not in a hard conflict,
+ * given the classes that have been placed already. The value of the move is computed while the new placements are assigned,
+ * before the original placements are restored, and the result is returned as one {@link ItcCompoundNeighbour}.
+ *
+ */
+public class ItcRuinAndRecreate implements NeighbourSelection<Lecture, Placement>, HillClimberSelection {
+    private int iMaxClasses = 20;
+    private int iSamples = 50;
+    private double iPenalizedProb = 0.5;
+    private boolean iHC = false;
+    private ItcPenalizedLectures iPenalized = null;
+    private Map<Long, List<Lecture>> iOfferings = new HashMap<Long, List<Lecture>>();
+
+    public ItcRuinAndRecreate(DataProperties config) {
+        iMaxClasses = config.getPropertyInt("ItcRuin.MaxClasses", iMaxClasses);
+        iSamples = config.getPropertyInt("ItcRuin.Samples", iSamples);
+        iPenalizedProb = config.getPropertyDouble("ItcPenalized.Probability", iPenalizedProb);
+    }
+
+    @Override
+    public void init(Solver<Lecture, Placement> solver) {
+        iPenalized = ItcPenalizedLectures.getInstance(solver);
+        iOfferings.clear();
+        for (Lecture lecture: solver.currentSolution().getModel().variables()) {
+            if (lecture.getConfiguration() == null) continue;
+            List<Lecture> lectures = iOfferings.get(lecture.getConfiguration().getOfferingId());
+            if (lectures == null) {
+                lectures = new ArrayList<Lecture>();
+                iOfferings.put(lecture.getConfiguration().getOfferingId(), lectures);
+            }
+            lectures.add(lecture);
+        }
+    }
+
+    @Override
+    public void setHcMode(boolean hcMode) {
+        iHC = hcMode;
+    }
+
+    @Override
+    public Neighbour<Lecture, Placement> selectNeighbour(Solution<Lecture, Placement> solution) {
+        Model<Lecture, Placement> model = solution.getModel();
+        Assignment<Lecture, Placement> assignment = solution.getAssignment();
+        Lecture seed = null;
+        if (iPenalized != null && ToolBox.random() < iPenalizedProb)
+            seed = iPenalized.select(assignment);
+        if (seed == null)
+            seed = ToolBox.random(model.variables());
+
+        List<Lecture> ruined = null;
+        int type = ToolBox.random(4);
+        for (int i = 0; i < 4 && (ruined == null || ruined.size() <= 1); i++)
+            ruined = ruin(assignment, seed, (type + i) % 4);
+        if (ruined == null || ruined.size() <= 1) return null;
+
+        ItcCompoundNeighbour n = recreate(model, assignment, ruined, solution.getIteration());
+        if (n == null || (iHC && n.value(assignment) > 0)) return null;
+        return n;
+    }
+
+    /**
+     * Classes to be ruined (the seed first, limited to ItcRuin.MaxClasses)
+     * @param type 0 course, 1 room and day, 2 student, 3 distribution constraint
+     */
+    protected List<Lecture> ruin(Assignment<Lecture, Placement> assignment, Lecture seed, int type) {
+        Set<Lecture> lectures = new LinkedHashSet<Lecture>();
+        switch (type) {
+            case 0:
+                if (seed.getConfiguration() != null) {
+                    List<Lecture> offering = iOfferings.get(seed.getConfiguration().getOfferingId());
+                    if (offering != null) lectures.addAll(offering);
+                }
+                break;
+            case 1:
+                Placement placement = assignment.getValue(seed);
+                if (placement == null || placement.getRoomLocation() == null) break;
+                RoomConstraint rc = placement.getRoomLocation().getRoomConstraint();
+                if (rc == null) break;
+                TimeLocation time = placement.getTimeLocation();
+                for (Lecture other: rc.variables()) {
+                    Placement p = assignment.getValue(other);
+                    if (p != null && p.hasRoomLocation(placement.getRoomLocation().getId()) &&
+                            time.shareDays(p.getTimeLocation()) && time.shareWeeks(p.getTimeLocation()))
+                        lectures.add(other);
+                }
+                break;
+            case 2:
+                if (seed.students().isEmpty()) break;
+                Student student = ToolBox.random(new ArrayList<Student>(seed.students()));
+                lectures.addAll(student.getLectures());
+                break;
+            case 3:
+                List<Constraint<Lecture, Placement>> distributions = new ArrayList<Constraint<Lecture, Placement>>();
+                for (Constraint<Lecture, Placement> constraint: seed.constraints())
+                    if (constraint instanceof GroupConstraint || constraint instanceof FlexibleConstraint || constraint instanceof ItcDistribution)
+                        distributions.add(constraint);
+                if (distributions.isEmpty()) break;
+                lectures.addAll(ToolBox.random(distributions).variables());
+                break;
+        }
+        lectures.remove(seed);
+        List<Lecture> ret = new ArrayList<Lecture>(lectures);
+        for (int i = ret.size() - 1; i > 0; i--)
+            Collections.swap(ret, i, ToolBox.random(i + 1));
+        if (ret.size() >= iMaxClasses) ret = new ArrayList<Lecture>(ret.subList(0, iMaxClasses - 1));
+        ret.add(0, seed);
+        return ret;
+    }
+
+    /**
+     * Unassign the given classes and place them back greedily, the original assignment is restored afterwards.
+     * @return neighbour with the new placements of the classes that have changed, null if some previously assigned class
+     * could not be placed or if there is no change
+     */
+    protected ItcCompoundNeighbour recreate(Model<Lecture, Placement> model, Assignment<Lecture, Placement> assignment, List<Lecture> lectures, long iteration) {
+        Map<Lecture, Placement> old = new HashMap<Lecture, Placement>();
+        for (Lecture lecture: lectures) {
+            Placement placement = assignment.getValue(lecture);
+            if (placement != null) old.put(lecture, placement);
+        }
+        ItcCompoundNeighbour.Tentative tentative = new ItcCompoundNeighbour.Tentative(model, assignment, lectures, iteration);
+        try {
+            return place(model, assignment, lectures, old, tentative);
+        } finally {
+            tentative.restore();
+        }
+    }
+
+    /**
+     * Place the (unassigned) classes greedily, the ones with the fewest placements first
+     */
+    private ItcCompoundNeighbour place(Model<Lecture, Placement> model, Assignment<Lecture, Placement> assignment, List<Lecture> lectures, Map<Lecture, Placement> old, ItcCompoundNeighbour.Tentative tentative) {
+        List<Lecture> order = new ArrayList<Lecture>(lectures);
+        Collections.sort(order, new Comparator<Lecture>() {
+            @Override
+            public int compare(Lecture l1, Lecture l2) {
+                return Integer.compare(l1.values(assignment).size(), l2.values(assignment).size());
+            }
+        });
+        Map<Lecture, Placement> changes = new HashMap<Lecture, Placement>();
+        for (Lecture lecture: order) {
+            Placement best = null;
+            double bestValue = 0.0;
+            Placement current = old.get(lecture);
+            if (current != null && !model.inConflict(assignment, current)) {
+                best = current;
+                bestValue = current.toDouble(assignment);
+            }
+            List<Placement> values = lecture.values(assignment);
+            boolean all = values.size() <= iSamples;
+            for (int i = 0; i < (all ? values.size() : iSamples); i++) {
+                Placement placement = (all ? values.get(i) : ToolBox.random(values));
+                if (placement.equals(current) || model.inConflict(assignment, placement)) continue;
+                double value = placement.toDouble(assignment);
+                if (best == null || value < bestValue) {
+                    best = placement;
+                    bestValue = value;
+                }
+            }
+            if (best == null) {
+                if (current != null) return null;
+                continue;
+            }
+            tentative.assign(best);
+            if (!best.equals(current)) changes.put(lecture, best);
+        }
+        if (changes.isEmpty()) return null;
+        return new ItcCompoundNeighbour(changes, tentative.getValue());
+    }
+}
@@ -0,0 +1,15 @@
+package org.cpsolver.coursett.itc2019;
+
+/**
+ * Student conflict criterion that checks student conflicts using the {@link ItcStudentConflictTable},
+ * which is set by the {@link ItcCompetitionLoader} once the problem is loaded.
+ *
+ */
+public interface ItcStudentConflictCriterion {
+
+    /** Student conflict table, null if not set */
+    public ItcStudentConflictTable getConflictTable();
+
+    /** Set student conflict table */
+    public void setConflictTable(ItcStudentConflictTable table);
+}
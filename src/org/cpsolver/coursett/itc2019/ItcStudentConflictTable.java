@@ -0,0 +1,155 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cpsolver.coursett.constraint.JenrlConstraint;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.criteria.Criterion;
+import org.cpsolver.ifs.model.Model;
+
+/**
+ * Precomputed ITC 2019 student conflicts. All distinct times of the problem are indexed and for each pair of them it is
+ * stored whether they overlap, or the number of slots between them when they share a day and a week (or that
+ * they cannot be in a conflict). Together with the room travel times (in slots), checking whether two placements
+ * are in a student conflict is an array lookup and a travel time lookup:
+ * two placements are in a conflict when they overlap or when the travel time between their rooms exceeds the gap.
+ * The index of a time is kept by the time itself (see {@link ItcTimeLocation}) and the travel times are indexed
+ * directly by the room ids (which are dense in the ITC 2019 instances), so no hashing is involved in the check.
+ * <br>
+ * The table is created by the {@link ItcCompetitionLoader} and it is kept by the {@link ItcStudentConflictCriterion}
+ * criteria of the model (registered in General.Criteria), where it can be retrieved by {@link #getInstance(Model)}.
+ * When there are more than ITC2019.StudentConflictTableLimit distinct times, the pairs are not precomputed.
+ *
+ */
+public class ItcStudentConflictTable {
+    /** Times overlap */
+    public static final short OVERLAP = -1;
+    /** Times do not share a day or a week */
+    public static final short NO_CONFLICT = Short.MAX_VALUE;
+
+    private Map<TimeLocation, Integer> iTimeIndex = new IdentityHashMap<TimeLocation, Integer>();
+    private short[] iGaps = null;
+    private int[][] iTravel;
+
+    /**
+     * @param lectures all classes of the problem
+     * @param travelTimes travel times between rooms (in slots), by room ids
+     * @param limit maximal number of distinct times for which the pairs are precomputed
+     */
+    public ItcStudentConflictTable(List<Lecture> lectures, Map<Long, Map<Long, Integer>> travelTimes, int limit) {
+        Map<String, Integer> distinct = new HashMap<String, Integer>();
+        Map<Integer, TimeLocation> times = new HashMap<Integer, TimeLocation>();
+        int maxRoomId = -1;
+        for (Lecture lecture: lectures) {
+            for (TimeLocation time: lecture.timeLocations()) {
+                String key = time.getDayCode() + ":" + time.getStartSlot() + ":" + time.getLength() + ":" + time.getDatePatternName();
+                Integer index = distinct.get(key);
+                if (index == null) {
+                    index = distinct.size();
+                    distinct.put(key, index);
+                    times.put(index, time);
+                }
+                iTimeIndex.put(time, index);
+            }
+            for (RoomLocation room: lecture.roomLocations())
+                maxRoomId = Math.max(maxRoomId, room.getId().intValue());
+        }
+        int n = distinct.size();
+        if (n <= limit) {
+            iGaps = new short[n * (n + 1) / 2];
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j <= i; j++)
+                    iGaps[i * (i + 1) / 2 + j] = computeGap(times.get(i), times.get(j));
+            for (Map.Entry<TimeLocation, Integer> entry: iTimeIndex.entrySet())
+                if (entry.getKey() instanceof ItcTimeLocation)
+                    ((ItcTimeLocation)entry.getKey()).setTableIndex(entry.getValue());
+        }
+        iTravel = new int[maxRoomId + 1][maxRoomId + 1];
+        for (Map.Entry<Long, Map<Long, Integer>> e1: travelTimes.entrySet()) {
+            int r1 = e1.getKey().intValue();
+            if (r1 < 0 || r1 > maxRoomId) continue;
+            for (Map.Entry<Long, Integer> e2: e1.getValue().entrySet()) {
+                int r2 = e2.getKey().intValue();
+                if (r2 < 0 || r2 > maxRoomId) continue;
+                iTravel[r1][r2] = Math.max(iTravel[r1][r2], e2.getValue());
+                iTravel[r2][r1] = Math.max(iTravel[r2][r1], e2.getValue());
+            }
+        }
+    }
+
+    /** Table of the given model (kept by its {@link ItcStudentConflictCriterion} criteria), null if there is none */
+    public static ItcStudentConflictTable getInstance(Model<Lecture, Placement> model) {
+        for (Criterion<Lecture, Placement> criterion: model.getCriteria())
+            if (criterion instanceof ItcStudentConflictCriterion && ((ItcStudentConflictCriterion)criterion).getConflictTable() != null)
+                return ((ItcStudentConflictCriterion)criterion).getConflictTable();
+        return null;
+    }
+
+    /**
+     * Gap between two times
+     * @return {@link #OVERLAP} if they overlap, {@link #NO_CONFLICT} if they do not share a day or a week, number of slots between them otherwise
+     */
+    public static short computeGap(TimeLocation t1, TimeLocation t2) {
+        if (!t1.shareDays(t2) || !t1.shareWeeks(t2)) return NO_CONFLICT;
+        int s1 = t1.getStartSlot(), e1 = s1 + t1.getLength();
+        int s2 = t2.getStartSlot(), e2 = s2 + t2.getLength();
+        if (s1 < e2 && s2 < e1) return OVERLAP;
+        return (short)Math.min(NO_CONFLICT - 1, s2 >= e1 ? s2 - e1 : s1 - e2);
+    }
+
+    /** Gap between two times, see {@link #computeGap(TimeLocation, TimeLocation)} */
+    public short getGap(TimeLocation t1, TimeLocation t2) {
+        if (iGaps != null && t1 instanceof ItcTimeLocation && t2 instanceof ItcTimeLocation) {
+            int i = ((ItcTimeLocation)t1).getTableIndex(), j = ((ItcTimeLocation)t2).getTableIndex();
+            if (i >= 0 && j >= 0)
+                return (i >= j ? iGaps[i * (i + 1) / 2 + j] : iGaps[j * (j + 1) / 2 + i]);
+        }
+        if (iGaps != null) {
+            Integer i = iTimeIndex.get(t1), j = iTimeIndex.get(t2);
+            if (i != null && j != null)
+                return (i >= j ? iGaps[i * (i + 1) / 2 + j] : iGaps[j * (j + 1) / 2 + i]);
+        }
+        return computeGap(t1, t2);
+    }
+
+    /** True if the two times overlap */
+    public boolean overlaps(TimeLocation t1, TimeLocation t2) {
+        return getGap(t1, t2) == OVERLAP;
+    }
+
+    /** Travel time between two rooms in slots */
+    public int getTravel(RoomLocation r1, RoomLocation r2) {
+        int i = r1.getId().intValue(), j = r2.getId().intValue();
+        return (i < 0 || j < 0 || i >= iTravel.length || j >= iTravel.length ? 0 : iTravel[i][j]);
+    }
+
+    /** True if there is a student conflict between the two placements */
+    public boolean inConflict(Placement p1, Placement p2) {
+        if (p1 == null || p2 == null) return false;
+        short gap = getGap(p1.getTimeLocation(), p2.getTimeLocation());
+        if (gap == OVERLAP) return true;
+        if (gap == NO_CONFLICT || p1.getRoomLocation() == null || p2.getRoomLocation() == null) return false;
+        return getTravel(p1.getRoomLocation(), p2.getRoomLocation()) > gap;
+    }
+
+    /** True if the two placements do not overlap, but the travel time between their rooms exceeds the gap between them */
+    public boolean isDistanceConflict(Placement p1, Placement p2) {
+        if (p1 == null || p2 == null || p1.getRoomLocation() == null || p2.getRoomLocation() == null) return false;
+        short gap = getGap(p1.getTimeLocation(), p2.getTimeLocation());
+        if (gap == OVERLAP || gap == NO_CONFLICT) return false;
+        return getTravel(p1.getRoomLocation(), p2.getRoomLocation()) > gap;
+    }
+
+    /** True if the two classes of the given joint enrollment constraint are in a student conflict */
+    public boolean inConflict(Assignment<Lecture, Placement> assignment, JenrlConstraint jenrl) {
+        List<Lecture> lectures = jenrl.variables();
+        return inConflict(assignment.getValue(lectures.get(0)), assignment.getValue(lectures.get(1)));
+    }
+}
@@ -0,0 +1,27 @@
+package org.cpsolver.coursett.itc2019;
+
+import org.cpsolver.coursett.criteria.StudentDistanceConflict;
+import org.cpsolver.coursett.model.Placement;
+
+/**
+ * ITC 2019 version of the {@link StudentDistanceConflict} criterion
+ * (student conflicts between classes that do not overlap, but the travel time between their rooms exceeds the gap between them).
+ * The conflicts are looked up in the {@link ItcStudentConflictTable} when it is set.
+ *
+ */
+public class ItcStudentDistanceConflict extends StudentDistanceConflict implements ItcStudentConflictCriterion {
+    private ItcStudentConflictTable iTable = null;
+
+    @Override
+    public ItcStudentConflictTable getConflictTable() { return iTable; }
+
+    @Override
+    public void setConflictTable(ItcStudentConflictTable table) { iTable = table; }
+
+    @Override
+    public boolean inConflict(Placement p1, Placement p2) {
+        ItcStudentConflictTable table = iTable;
+        if (table == null) return super.inConflict(p1, p2);
+        return table.isDistanceConflict(p1, p2);
+    }
+}
@@ -0,0 +1,27 @@
+package org.cpsolver.coursett.itc2019;
+
+import org.cpsolver.coursett.criteria.StudentHardConflict;
+import org.cpsolver.coursett.model.Placement;
+
+/**
+ * ITC 2019 version of the {@link StudentHardConflict} criterion
+ * (student conflicts between classes that have only one section).
+ * The conflicts are looked up in the {@link ItcStudentConflictTable} when it is set.
+ *
+ */
+public class ItcStudentHardConflict extends StudentHardConflict implements ItcStudentConflictCriterion {
+    private ItcStudentConflictTable iTable = null;
+
+    @Override
+    public ItcStudentConflictTable getConflictTable() { return iTable; }
+
+    @Override
+    public void setConflictTable(ItcStudentConflictTable table) { iTable = table; }
+
+    @Override
+    public boolean inConflict(Placement p1, Placement p2) {
+        ItcStudentConflictTable table = iTable;
+        if (table == null) return super.inConflict(p1, p2);
+        return table.inConflict(p1, p2);
+    }
+}
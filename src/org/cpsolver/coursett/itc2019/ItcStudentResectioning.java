@@ -0,0 +1,281 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.Logger;
+import org.cpsolver.coursett.model.Configuration;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.Student;
+import org.cpsolver.coursett.model.TimetableModel;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.extension.Extension;
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solution.SolutionListener;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+
+/**
+ * Student re-sectioning phase. With the class placements fixed, the students of different offerings can be re-sectioned
+ * independently: for each offering, all its enrollments (a configuration, one class of each subpart, respecting the
+ * parent-child relations) are enumerated (up to ItcResection.MaxEnrollments) and each student that is in a conflict
+ * is moved into the enrollment with the fewest student conflicts (using the {@link ItcStudentConflictTable}) that
+ * does not exceed the class limits. The offerings are processed in parallel against a snapshot of the current placements
+ * and enrollments, the proposed moves are then committed one by one on the calling thread, each only when it is still
+ * improving given the moves committed before it (a student can have proposals from several offerings).
+ * <br>
+ * As an extension (in Extensions.Classes), the phase is run at most once in ItcResection.Interval seconds on the solver
+ * thread, right after a new best solution is saved (the extension is registered as a listener of the current solution),
+ * so that the enrollments are changed against the placements of the best solution, which is then saved again.
+ * It is also run before the solution is saved when ItcResection.BeforeSave is true.
+ * Student enrollments are shared by all the assignments, so the phase is not run when there are more solver threads
+ * (Parallel.NrSolvers is above one).
+ *
+ */
+public class ItcStudentResectioning extends Extension<Lecture, Placement> implements SolutionListener<Lecture, Placement> {
+    private static Logger sLog = org.apache.logging.log4j.LogManager.getLogger(ItcStudentResectioning.class);
+    private long iInterval = 300000;
+    private int iMaxEnrollments = 1000;
+    private long iLastRun = 0;
+
+    public ItcStudentResectioning(Solver<Lecture, Placement> solver, DataProperties properties) {
+        super(solver, properties);
+        iInterval = Math.round(1000.0 * properties.getPropertyDouble("ItcResection.Interval", 300.0));
+        iMaxEnrollments = properties.getPropertyInt("ItcResection.MaxEnrollments", iMaxEnrollments);
+    }
+
+    /** True if there are more solver threads, sharing the student enrollments */
+    public static boolean isParallel(DataProperties properties) {
+        return properties.getPropertyInt("Parallel.NrSolvers", 1) > 1;
+    }
+
+    @Override
+    public void register(Model<Lecture, Placement> model) {
+        super.register(model);
+        iLastRun = System.currentTimeMillis();
+        if (iInterval <= 0) return;
+        if (isParallel(getProperties())) {
+            sLog.warn("Student re-sectioning is disabled: it requires one solver thread (Parallel.NrSolvers=1).");
+            return;
+        }
+        getSolver().currentSolution().addSolutionListener(this);
+    }
+
+    @Override
+    public void unregister(Model<Lecture, Placement> model) {
+        super.unregister(model);
+        if (getSolver().currentSolution() != null) getSolver().currentSolution().removeSolutionListener(this);
+    }
+
+    @Override
+    public void solutionUpdated(Solution<Lecture, Placement> solution) {}
+
+    @Override
+    public void getInfo(Solution<Lecture, Placement> solution, Map<String, String> info) {}
+
+    @Override
+    public void getInfo(Solution<Lecture, Placement> solution, Map<String, String> info, Collection<Lecture> variables) {}
+
+    @Override
+    public void bestCleared(Solution<Lecture, Placement> solution) {}
+
+    @Override
+    public void bestSaved(Solution<Lecture, Placement> solution) {
+        if (System.currentTimeMillis() - iLastRun < iInterval) return;
+        iLastRun = System.currentTimeMillis();
+        // the current solution is the best one, keep it that way when some students have been moved
+        if (resection((TimetableModel)solution.getModel(), solution.getAssignment()) > 0)
+            solution.saveBest();
+        iLastRun = System.currentTimeMillis();
+    }
+
+    @Override
+    public void bestRestored(Solution<Lecture, Placement> solution) {}
+
+    /**
+     * Re-section the students of all the offerings (nothing is done when Parallel.NrSolvers is above one)
+     * @return number of students that have been moved
+     */
+    public int resection(TimetableModel model, Assignment<Lecture, Placement> assignment) {
+        if (isParallel(model.getProperties())) return 0;
+        ItcStudentConflictTable table = ItcStudentConflictTable.getInstance(model);
+        if (table == null) return 0;
+        long t0 = System.currentTimeMillis();
+
+        // snapshot
+        Map<Lecture, Placement> placements = new HashMap<Lecture, Placement>();
+        Map<Lecture, Integer> limits = new HashMap<Lecture, Integer>();
+        Map<Long, Configuration> offerings = new HashMap<Long, Configuration>();
+        for (Lecture lecture: model.variables()) {
+            Placement placement = assignment.getValue(lecture);
+            if (placement != null) placements.put(lecture, placement);
+            limits.put(lecture, lecture.classLimit(assignment));
+            if (lecture.getConfiguration() != null)
+                offerings.put(lecture.getConfiguration().getOfferingId(), lecture.getConfiguration());
+        }
+        Map<Student, Set<Lecture>> enrollments = new HashMap<Student, Set<Lecture>>();
+        for (Student student: model.getAllStudents())
+            enrollments.put(student, new HashSet<Lecture>(student.getLectures()));
+
+        List<Move> moves = offerings.values().parallelStream()
+                .flatMap(configuration -> propose(table, configuration, placements, limits, enrollments).stream())
+                .collect(Collectors.toList());
+
+        // commit
+        int moved = 0;
+        for (Move move: moves) {
+            Set<Lecture> others = new HashSet<Lecture>(move.getStudent().getLectures());
+            others.removeAll(move.getDrop());
+            if (!others.containsAll(move.getKeep())) continue;
+            others.removeAll(move.getKeep());
+            boolean available = true;
+            for (Lecture lecture: move.getAdd())
+                if (lecture.students().size() >= limits.get(lecture)) { available = false; break; }
+            if (!available) continue;
+            List<Lecture> before = new ArrayList<Lecture>(move.getDrop()); before.addAll(move.getKeep());
+            List<Lecture> after = new ArrayList<Lecture>(move.getAdd()); after.addAll(move.getKeep());
+            Map<Lecture, Placement> current = new HashMap<Lecture, Placement>();
+            for (Lecture lecture: others) current.put(lecture, assignment.getValue(lecture));
+            for (Lecture lecture: before) current.put(lecture, assignment.getValue(lecture));
+            for (Lecture lecture: after) current.put(lecture, assignment.getValue(lecture));
+            if (cost(table, current, after, others) >= cost(table, current, before, others)) continue;
+            ItcEnrollments.move(model, assignment, move.getStudent(), move.getDrop(), move.getAdd());
+            moved ++;
+        }
+        sLog.info("Re-sectioning moved " + moved + " of " + moves.size() + " proposed students (" + (System.currentTimeMillis() - t0) + " ms).");
+        return moved;
+    }
+
+    /**
+     * Propose moves of the students of the given offering (only the snapshot is used, no changes are made)
+     */
+    protected List<Move> propose(ItcStudentConflictTable table, Configuration configuration, Map<Lecture, Placement> placements, Map<Lecture, Integer> limits, Map<Student, Set<Lecture>> enrollments) {
+        List<Move> moves = new ArrayList<Move>();
+        Long offeringId = configuration.getOfferingId();
+        List<List<Lecture>> candidates = new ArrayList<List<Lecture>>();
+        for (Configuration config: configuration.getAltConfigurations()) {
+            List<Collection<Lecture>> pending = new ArrayList<Collection<Lecture>>();
+            for (Long subpartId: config.getTopSubpartIds())
+                pending.add(config.getTopLectures(subpartId));
+            enumerate(pending, new ArrayList<Lecture>(), candidates);
+        }
+        if (candidates.size() <= 1) return moves;
+
+        Map<Lecture, Integer> counts = new HashMap<Lecture, Integer>();
+        Set<Student> enrolled = new HashSet<Student>();
+        for (List<Lecture> candidate: candidates)
+            for (Lecture lecture: candidate)
+                if (!counts.containsKey(lecture)) {
+                    counts.put(lecture, lecture.students().size());
+                    enrolled.addAll(lecture.students());
+                }
+        List<Student> students = new ArrayList<Student>(enrolled);
+        for (int i = students.size() - 1; i > 0; i--)
+            Collections.swap(students, i, ToolBox.random(i + 1));
+
+        for (Student student: students) {
+            List<Lecture> enrollment = new ArrayList<Lecture>();
+            List<Lecture> others = new ArrayList<Lecture>();
+            for (Lecture lecture: enrollments.get(student)) {
+                if (lecture.getConfiguration() != null && offeringId.equals(lecture.getConfiguration().getOfferingId()))
+                    enrollment.add(lecture);
+                else
+                    others.add(lecture);
+            }
+            double current = cost(table, placements, enrollment, others);
+            if (current <= 0) continue;
+            List<Lecture> best = null;
+            double bestCost = current;
+            candidates: for (List<Lecture> candidate: candidates) {
+                for (Lecture lecture: candidate)
+                    if (!enrollment.contains(lecture) && counts.get(lecture) >= limits.get(lecture)) continue candidates;
+                double cost = cost(table, placements, candidate, others);
+                if (cost < bestCost) {
+                    best = candidate; bestCost = cost;
+                }
+            }
+            if (best == null) continue;
+            Move move = new Move(student, enrollment, best);
+            for (Lecture lecture: move.getDrop())
+                if (counts.containsKey(lecture)) counts.put(lecture, counts.get(lecture) - 1);
+            for (Lecture lecture: move.getAdd()) counts.put(lecture, counts.get(lecture) + 1);
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    /**
+     * Enumerate enrollments: one class from each of the pending collections, together with one child class of each of its child subparts
+     */
+    private void enumerate(List<Collection<Lecture>> pending, List<Lecture> current, List<List<Lecture>> enrollments) {
+        if (enrollments.size() >= iMaxEnrollments) return;
+        if (pending.isEmpty()) {
+            enrollments.add(new ArrayList<Lecture>(current));
+            return;
+        }
+        for (Lecture lecture: pending.get(0)) {
+            List<Collection<Lecture>> next = new ArrayList<Collection<Lecture>>(pending.subList(1, pending.size()));
+            if (lecture.getChildrenSubpartIds() != null)
+                for (Long subpartId: lecture.getChildrenSubpartIds())
+                    next.add(lecture.getChildren(subpartId));
+            current.add(lecture);
+            enumerate(next, current, enrollments);
+            current.remove(current.size() - 1);
+            if (enrollments.size() >= iMaxEnrollments) return;
+        }
+    }
+
+    /**
+     * Number of student conflicts of an enrollment, among its classes and with the other classes of the student
+     */
+    private static double cost(ItcStudentConflictTable table, Map<Lecture, Placement> placements, List<Lecture> enrollment, Collection<Lecture> others) {
+        int conflicts = 0;
+        for (int i = 0; i < enrollment.size(); i++) {
+            Placement p1 = placements.get(enrollment.get(i));
+            if (p1 == null) continue;
+            for (int j = i + 1; j < enrollment.size(); j++)
+                if (table.inConflict(p1, placements.get(enrollment.get(j)))) conflicts ++;
+            for (Lecture other: others)
+                if (table.inConflict(p1, placements.get(other))) conflicts ++;
+        }
+        return conflicts;
+    }
+
+    /**
+     * Proposed change of the enrollment of a student in an offering
+     */
+    public static class Move {
+        private Student iStudent;
+        private List<Lecture> iDrop = new ArrayList<Lecture>(), iAdd = new ArrayList<Lecture>(), iKeep = new ArrayList<Lecture>();
+
+        public Move(Student student, List<Lecture> enrollment, List<Lecture> newEnrollment) {
+            iStudent = student;
+            for (Lecture lecture: enrollment) {
+                if (newEnrollment.contains(lecture))
+                    iKeep.add(lecture);
+                else
+                    iDrop.add(lecture);
+            }
+            for (Lecture lecture: newEnrollment)
+                if (!enrollment.contains(lecture)) iAdd.add(lecture);
+        }
+
+        public Student getStudent() { return iStudent; }
+        /** Classes the student is removed from */
+        public List<Lecture> getDrop() { return iDrop; }
+        /** Classes the student is added to */
+        public List<Lecture> getAdd() { return iAdd; }
+        /** Classes of the offering the student stays in */
+        public List<Lecture> getKeep() { return iKeep; }
+    }
+}
@@ -0,0 +1,31 @@
+package org.cpsolver.coursett.itc2019;
+
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.ifs.util.DataProperties;
+
+/**
+ * ITC 2019 version of the {@link org.cpsolver.coursett.neighbourhoods.TimeChange} neighbourhood:
+ * a randomly selected class is moved to a different time, keeping its room.
+ *
+ */
+public class ItcTimeChange extends ItcChangeMove {
+
+    public ItcTimeChange(DataProperties config) {
+        super(config);
+    }
+
+    @Override
+    protected int getNrCandidates(Lecture lecture) {
+        return lecture.timeLocations().size();
+    }
+
+    @Override
+    protected int getTimeIndex(int timeIndex, int candidate) {
+        return candidate;
+    }
+
+    @Override
+    protected int getRoomIndex(int roomIndex, int candidate) {
+        return roomIndex;
+    }
+}
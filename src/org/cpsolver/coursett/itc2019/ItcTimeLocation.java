@@ -0,0 +1,25 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.BitSet;
+
+import org.cpsolver.coursett.model.TimeLocation;
+
+/**
+ * ITC 2019 time. Unlike the {@link TimeLocation}, it remembers its (dense) index in the {@link ItcStudentConflictTable},
+ * so that the gap between two times can be looked up without any hashing.
+ *
+ */
+public class ItcTimeLocation extends TimeLocation {
+    private int iTableIndex = -1;
+
+    public ItcTimeLocation(int dayCode, int startTime, int length, int pref, double normPref, int datePatternPreference,
+            Long datePatternId, String datePatternName, BitSet weekCode, int breakTime) {
+        super(dayCode, startTime, length, pref, normPref, datePatternPreference, datePatternId, datePatternName, weekCode, breakTime);
+    }
+
+    /** Index of the time in the student conflict table, -1 if not indexed */
+    public int getTableIndex() { return iTableIndex; }
+
+    /** Set index of the time in the student conflict table */
+    public void setTableIndex(int index) { iTableIndex = index; }
+}
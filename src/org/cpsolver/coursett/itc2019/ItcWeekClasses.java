@@ -0,0 +1,69 @@
+package org.cpsolver.coursett.itc2019;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.TimeLocation;
+
+/**
+ * Equivalence classes of weeks for a set of classes. Two weeks are equivalent when every time
+ * in the domains of the given classes either meets in both weeks or in none of them
+ * (see {@link TimeLocation#shareWeeks(BitSet)}). A week-based evaluation then only needs to be done once
+ * for each class, weighted by the number of weeks in the class. Weeks in which none of the times meet
+ * are left out, as they cannot be penalized.
+ *
+ */
+public class ItcWeekClasses {
+    private final BitSet[] iWeeks;
+    private final int[] iMultiplicity;
+
+    public ItcWeekClasses(Collection<Lecture> lectures, List<BitSet> weeks) {
+        List<BitSet> patterns = new ArrayList<BitSet>();
+        Set<BitSet> seen = new HashSet<BitSet>();
+        for (Lecture lecture: lectures)
+            for (TimeLocation time: lecture.timeLocations())
+                if (seen.add(time.getWeekCode())) patterns.add(time.getWeekCode());
+
+        Map<BitSet, Integer> classes = new LinkedHashMap<BitSet, Integer>();
+        List<BitSet> representatives = new ArrayList<BitSet>();
+        List<Integer> multiplicity = new ArrayList<Integer>();
+        for (BitSet week: weeks) {
+            if (week == null) {
+                // no week restriction (whole semester)
+                representatives.add(null); multiplicity.add(1);
+                continue;
+            }
+            BitSet signature = new BitSet(patterns.size());
+            for (int i = 0; i < patterns.size(); i++)
+                if (patterns.get(i).intersects(week)) signature.set(i);
+            if (signature.isEmpty()) continue;
+            Integer index = classes.get(signature);
+            if (index == null) {
+                classes.put(signature, representatives.size());
+                representatives.add(week); multiplicity.add(1);
+            } else {
+                multiplicity.set(index, multiplicity.get(index) + 1);
+            }
+        }
+        iWeeks = representatives.toArray(new BitSet[representatives.size()]);
+        iMultiplicity = new int[multiplicity.size()];
+        for (int i = 0; i < iMultiplicity.length; i++)
+            iMultiplicity[i] = multiplicity.get(i);
+    }
+
+    /** Number of week classes */
+    public int size() { return iWeeks.length; }
+
+    /** A week representing the given class */
+    public BitSet getWeek(int index) { return iWeeks[index]; }
+
+    /** Number of weeks in the given class */
+    public int getMultiplicity(int index) { return iMultiplicity[index]; }
+}